@@ -344,6 +344,29 @@ public class FileUtils {
 		}
 	}
 	
+	/**
+	 * create a new empty temporary file in the specified directory, using the same naming
+	 * convention as the {@link #writeTempFile(String, String) writeTempFile} method
+	 * 
+	 * @param directory the path of the directory to contain the file
+	 * @return the new file
+	 * @throws IOException if something bad happens
+	 */
+	public static File createTempFile(String directory) throws IOException {
+		
+		// check to see if the supplied path is writeable
+		if(isDirectoryWriteable(directory) == false) {
+			throw new IOException("unable to access specified path '" + directory + "'");
+		}
+		
+		// create the new temporary file
+		try {
+			return File.createTempFile("magdaa-", ".txt", new File(directory));
+		} catch (IOException e) {
+			throw new IOException("unable to create temp file", e);
+		}
+	}
+	
 	/**
 	 * read a file and return the contents as a byte array
 	 * @param path the path to the file to read
@@ -19,9 +19,24 @@
  */
 package org.magdaaproject.utils;
 
-import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
+import org.magdaaproject.utils.readings.ReadingsList;
 import org.magdaaproject.utils.readings.WeatherReading;
+import org.magdaaproject.utils.sensors.HumiditySensor;
+import org.magdaaproject.utils.sensors.RejectedRecordCounter;
+import org.magdaaproject.utils.sensors.SensorRegistry;
+import org.magdaaproject.utils.sensors.TemperatureSensor;
+import org.magdaaproject.utils.sensors.WeatherStation;
 
 import android.content.Context;
 
@@ -50,6 +65,65 @@ public class SensorUtils {
 	 */
 	public static final int VANTAGE_VUE = 200;
 	
+	/**
+	 * the size of a Vantage Vue LOOP packet in bytes
+	 */
+	public static final int VANTAGE_VUE_LOOP_PACKET_SIZE = 99;
+	
+	/**
+	 * the packet type of a Vantage Vue LOOP packet
+	 */
+	public static final int VANTAGE_VUE_LOOP_PACKET_TYPE = 0;
+	
+	/**
+	 * the packet type of a Vantage Vue LOOP2 packet
+	 */
+	public static final int VANTAGE_VUE_LOOP2_PACKET_TYPE = 1;
+	
+	/**
+	 * constant to identify records rejected because they were too short
+	 */
+	public static final int REJECTED_LENGTH = 0;
+	
+	/**
+	 * constant to identify records rejected because the header was missing
+	 */
+	public static final int REJECTED_HEADER = 1;
+	
+	/**
+	 * constant to identify records rejected because they failed the CRC check
+	 */
+	public static final int REJECTED_CRC = 2;
+	
+	/**
+	 * constant to identify records rejected because they contained invalid values
+	 */
+	public static final int REJECTED_VALUE = 3;
+	
+	/**
+	 * the minimum number of records in a batch before the batch is decoded in parallel
+	 */
+	public static final int PARALLEL_BATCH_THRESHOLD = 4096;
+	
+	/*
+	 * private class level constants
+	 */
+	private static final int[] CRC_TABLE = buildCrcTable();
+	
+	/*
+	 * private class level variables
+	 */
+	private static final ThreadLocal<byte[]> recordBuffer = new ThreadLocal<byte[]>();
+	
+	private static final int SAMPLE_BLOCK_SIZE = 256;
+	
+	private static final ThreadLocal<float[][]> sampleBuffers = new ThreadLocal<float[][]>() {
+		@Override
+		protected float[][] initialValue() {
+			return new float[2][SAMPLE_BLOCK_SIZE];
+		}
+	};
+	
 	
 	/**
 	 * convert a voltage to a temperature
@@ -58,28 +132,21 @@ public class SensorUtils {
 	 * @param sensorType the type of sensor used, one of the constants defined by this class
 	 * @param scale the temperature scale to use, one of the constants defined the UnitConversionUtils class
 	 * @return the temperature as derived from the voltage reading 
+	 * @throws IllegalArgumentException if the sensorType is invalid
 	 */
 	public static float convertVoltageToTemp(float voltage, int sensorType, int scale) {
 		
-		float mTemperature;
+		// sensors convert to celsius
+		float mTemperature = SensorRegistry.getTemperatureSensor(sensorType).convertVoltageToTemp(voltage);
 		
-		//determine which sensor type is being used
-		switch(sensorType){
-		case TMP36:
-			// this is a TMP36 sensor
-			// by default convert to celsius
-			mTemperature = (voltage - 0.5f) * 100.0f;
-			
-			// convert to the required scale
-			switch(scale) {
-			case UnitConversionUtils.FAHRENHEIT:
-				mTemperature =  UnitConversionUtils.comvertTemperature(mTemperature, UnitConversionUtils.CELSIUS, UnitConversionUtils.FAHRENHEIT);
-			case UnitConversionUtils.KELVIN:
-				mTemperature = UnitConversionUtils.comvertTemperature(mTemperature, UnitConversionUtils.CELSIUS, UnitConversionUtils.KELVIN);
-			}
+		// convert to the required scale
+		switch(scale) {
+		case UnitConversionUtils.FAHRENHEIT:
+			mTemperature = UnitConversionUtils.comvertTemperature(mTemperature, UnitConversionUtils.CELSIUS, UnitConversionUtils.FAHRENHEIT);
+			break;
+		case UnitConversionUtils.KELVIN:
+			mTemperature = UnitConversionUtils.comvertTemperature(mTemperature, UnitConversionUtils.CELSIUS, UnitConversionUtils.KELVIN);
 			break;
-		default:
-			throw new IllegalArgumentException("the sensorType is invalid");
 		}
 		
 		return mTemperature;
@@ -91,22 +158,10 @@ public class SensorUtils {
 	 * @param voltage the voltage from the sensor
 	 * @param sensorType the type of sensor used, one of the constants define by this class
 	 * @return the relative humidity derived from the voltage reading
+	 * @throws IllegalArgumentException if the sensorType is invalid
 	 */
 	public static float convertVoltageToRelativeHumidity(float voltage, int sensorType) {
-		
-		float mRelativeHumidity;
-		
-		// determine which sensor type is being used
-		switch(sensorType) {
-		case HIH5031:
-			// this is a HIH-5031 sensor
-			mRelativeHumidity = (1.0f / 0.00636f) * ((voltage / 3.3f) - 0.1515f);
-			break;
-		default:
-			throw new IllegalArgumentException("the sensorType is invalid");
-		}
-		
-		return mRelativeHumidity;
+		return SensorRegistry.getHumiditySensor(sensorType).convertVoltageToRelativeHumidity(voltage);
 	}
 	
 	/**
@@ -116,22 +171,174 @@ public class SensorUtils {
 	 * @param temperature the current temperature
 	 * @param sensorType the type of sensor used, one of the constants define by this class
 	 * @return the adjusted relative humidity value
+	 * @throws IllegalArgumentException if the sensorType is invalid
 	 */
 	public static float adjustRelativeHumidity(float relativeHumidity, float temperature, int sensorType) {
+		return SensorRegistry.getHumiditySensor(sensorType).adjustRelativeHumidity(relativeHumidity, temperature);
+	}
+	
+	/**
+	 * convert a block of voltages, such as the samples read from an ADC channel, to temperatures
+	 * 
+	 * @param voltages an array of voltage readings
+	 * @param temperatures an array to hold the temperatures, may be the same array as the voltages
+	 * @param count the number of voltages to convert
+	 * @param sensorType the type of sensor used, one of the constants defined by this class
+	 * @param scale the temperature scale to use, one of the constants defined the UnitConversionUtils class
+	 * @throws IllegalArgumentException if the sensorType is invalid or an array is too short
+	 */
+	public static void convertVoltagesToTemp(float[] voltages, float[] temperatures, int count, int sensorType, int scale) {
 		
-		float newHumidity;
+		if(voltages.length < count || temperatures.length < count) {
+			throw new IllegalArgumentException("the arrays must hold at least " + count + " values");
+		}
 		
-		// determine which sensor is being used
-		switch(sensorType) {
-		case HIH5031:
-			// this is a HIH-5031 sensor
-			newHumidity = relativeHumidity / (1.0546f - (0.00216f * temperature));
-			break;
-		default:
-			throw new IllegalArgumentException("the sensorType is invalid");
+		SensorRegistry.getTemperatureSensor(sensorType).convertVoltagesToTemp(voltages, 0, temperatures, 0, count);
+		convertTemperatureScale(temperatures, 0, count, scale);
+	}
+	
+	/**
+	 * convert the remaining voltages in a buffer to temperatures, the position of both
+	 * buffers is advanced by the number of voltages converted
+	 * 
+	 * @param voltages a buffer of voltage readings
+	 * @param temperatures a buffer to hold the temperatures
+	 * @param sensorType the type of sensor used, one of the constants defined by this class
+	 * @param scale the temperature scale to use, one of the constants defined the UnitConversionUtils class
+	 * @throws IllegalArgumentException if the sensorType is invalid or the temperatures buffer is too short
+	 */
+	public static void convertVoltagesToTemp(FloatBuffer voltages, FloatBuffer temperatures, int sensorType, int scale) {
+		
+		int mCount = voltages.remaining();
+		
+		if(temperatures.remaining() < mCount) {
+			throw new IllegalArgumentException("the temperatures buffer must have at least " + mCount + " values remaining");
 		}
 		
-		return newHumidity;
+		TemperatureSensor mSensor = SensorRegistry.getTemperatureSensor(sensorType);
+		
+		if(voltages.hasArray() && temperatures.hasArray() && temperatures.isReadOnly() == false) {
+			// convert the backing arrays in place
+			int mOffset = temperatures.arrayOffset() + temperatures.position();
+			
+			mSensor.convertVoltagesToTemp(voltages.array(), voltages.arrayOffset() + voltages.position(), temperatures.array(), mOffset, mCount);
+			convertTemperatureScale(temperatures.array(), mOffset, mCount, scale);
+			
+			voltages.position(voltages.position() + mCount);
+			temperatures.position(temperatures.position() + mCount);
+			return;
+		}
+		
+		// copy direct buffers through a reusable block
+		float[] mBlock = sampleBuffers.get()[0];
+		int mLength;
+		
+		while(voltages.hasRemaining()) {
+			mLength = Math.min(voltages.remaining(), SAMPLE_BLOCK_SIZE);
+			
+			voltages.get(mBlock, 0, mLength);
+			mSensor.convertVoltagesToTemp(mBlock, 0, mBlock, 0, mLength);
+			convertTemperatureScale(mBlock, 0, mLength, scale);
+			temperatures.put(mBlock, 0, mLength);
+		}
+	}
+	
+	/**
+	 * convert a block of voltages, such as the samples read from an ADC channel, to relative
+	 * humidities, adjusting each one for the matching temperature in the same pass
+	 * 
+	 * @param voltages an array of voltage readings
+	 * @param temperatures an array of temperatures in celsius, or null if the humidities should not be adjusted
+	 * @param humidities an array to hold the relative humidities, may be the same array as the voltages
+	 * @param count the number of voltages to convert
+	 * @param sensorType the type of sensor used, one of the constants define by this class
+	 * @throws IllegalArgumentException if the sensorType is invalid or an array is too short
+	 */
+	public static void convertVoltagesToRelativeHumidity(float[] voltages, float[] temperatures, float[] humidities, int count, int sensorType) {
+		
+		if(voltages.length < count || humidities.length < count || (temperatures != null && temperatures.length < count)) {
+			throw new IllegalArgumentException("the arrays must hold at least " + count + " values");
+		}
+		
+		SensorRegistry.getHumiditySensor(sensorType).convertVoltagesToRelativeHumidity(voltages, 0, temperatures, 0, humidities, 0, count);
+	}
+	
+	/**
+	 * convert the remaining voltages in a buffer to relative humidities, adjusting each one for
+	 * the matching temperature in the same pass. the position of each buffer is advanced by the
+	 * number of voltages converted
+	 * 
+	 * @param voltages a buffer of voltage readings
+	 * @param temperatures a buffer of temperatures in celsius, or null if the humidities should not be adjusted
+	 * @param humidities a buffer to hold the relative humidities
+	 * @param sensorType the type of sensor used, one of the constants define by this class
+	 * @throws IllegalArgumentException if the sensorType is invalid or a buffer is too short
+	 */
+	public static void convertVoltagesToRelativeHumidity(FloatBuffer voltages, FloatBuffer temperatures, FloatBuffer humidities, int sensorType) {
+		
+		int mCount = voltages.remaining();
+		
+		if(humidities.remaining() < mCount || (temperatures != null && temperatures.remaining() < mCount)) {
+			throw new IllegalArgumentException("the buffers must have at least " + mCount + " values remaining");
+		}
+		
+		HumiditySensor mSensor = SensorRegistry.getHumiditySensor(sensorType);
+		
+		if(voltages.hasArray() && humidities.hasArray() && humidities.isReadOnly() == false && (temperatures == null || temperatures.hasArray())) {
+			// convert the backing arrays in place
+			mSensor.convertVoltagesToRelativeHumidity(
+					voltages.array(), 
+					voltages.arrayOffset() + voltages.position(), 
+					temperatures == null ? null : temperatures.array(), 
+					temperatures == null ? 0 : temperatures.arrayOffset() + temperatures.position(), 
+					humidities.array(), 
+					humidities.arrayOffset() + humidities.position(), 
+					mCount
+				);
+			
+			voltages.position(voltages.position() + mCount);
+			humidities.position(humidities.position() + mCount);
+			
+			if(temperatures != null) {
+				temperatures.position(temperatures.position() + mCount);
+			}
+			return;
+		}
+		
+		// copy direct buffers through reusable blocks
+		float[][] mBlocks = sampleBuffers.get();
+		float[] mTemperatures = null;
+		int mLength;
+		
+		while(voltages.hasRemaining()) {
+			mLength = Math.min(voltages.remaining(), SAMPLE_BLOCK_SIZE);
+			
+			voltages.get(mBlocks[0], 0, mLength);
+			
+			if(temperatures != null) {
+				mTemperatures = mBlocks[1];
+				temperatures.get(mTemperatures, 0, mLength);
+			}
+			
+			mSensor.convertVoltagesToRelativeHumidity(mBlocks[0], 0, mTemperatures, 0, mBlocks[0], 0, mLength);
+			humidities.put(mBlocks[0], 0, mLength);
+		}
+	}
+	
+	/*
+	 * convert a block of celsius temperatures to the required scale, using the same float
+	 * arithmetic as the convertVoltageToTemp method so that the results are identical
+	 */
+	private static void convertTemperatureScale(float[] temperatures, int offset, int length, int scale) {
+		
+		if(scale != UnitConversionUtils.FAHRENHEIT && scale != UnitConversionUtils.KELVIN) {
+			return;
+		}
+		
+		// the scale is the same for every value, so the JIT can move the switch in the conversion out of the loop
+		for(int i = offset; i < offset + length; i++) {
+			temperatures[i] = UnitConversionUtils.comvertTemperature(temperatures[i], UnitConversionUtils.CELSIUS, scale);
+		}
 	}
 	
 	/**
@@ -244,19 +451,7 @@ public class SensorUtils {
 	 * @throws IllegalArgumentException if the weather station type is invalid
 	 */
 	public static float convertRainClicksToMillimeters(int rainClicks, int weatherStationType) {
-		
-		float mConversionFactor = 0f;
-		
-		switch(weatherStationType) {
-		case VANTAGE_VUE:
-			mConversionFactor = 0.2f;
-			break;
-		default:
-			throw new IllegalArgumentException("the weather station type is invalid");
-		}
-		
-		return rainClicks * mConversionFactor;
-		
+		return rainClicks * SensorRegistry.getWeatherStation(weatherStationType).getRainClickInMillimeters();
 	}
 	
 	/**
@@ -269,114 +464,403 @@ public class SensorUtils {
 	 */
 	public static WeatherReading parseWeatherRecord(byte[] bytes, int weatherStationType) throws SensorUtilsException {
 		
-		switch(weatherStationType) {
-		case VANTAGE_VUE:
-			return parseVantageViewLoopPacket(bytes);
+		WeatherStation mStation = SensorRegistry.getWeatherStation(weatherStationType);
+		
+		// validate the parameters
+		if(bytes.length != mStation.getRecordSize()) {
+			throw new SensorUtilsException("record is too short, expected " + mStation.getRecordSize() + " bytes got " + bytes.length + " bytes");
+		}
+		
+		WeatherReading mWeatherReading = new WeatherReading();
+		
+		int mResult = mStation.parseRecord(bytes, 0, bytes.length, mWeatherReading);
+		
+		if(mResult == WeatherStation.RECORD_VALID) {
+			return mWeatherReading;
+		}
+		
+		switch(mResult) {
+		case REJECTED_HEADER:
+			throw new SensorUtilsException("missing record header");
+		case REJECTED_CRC:
+			throw new SensorUtilsException("record failed the CRC check");
 		default:
-			throw new IllegalArgumentException("the weather station type is invalid");
+			throw new SensorUtilsException("record contains an invalid value");
 		}
 	}
 	
-	private static WeatherReading parseVantageViewLoopPacket(byte[] bytes) throws SensorUtilsException {
+	/**
+	 * parse a binary weather record into an existing WeatherReading object without allocating
+	 * any memory, intended for use when polling a weather station at a high rate. for the
+	 * Vantage Vue both LOOP and LOOP2 packets are supported
+	 * 
+	 * @param bytes an array of bytes containing the record
+	 * @param offset the offset of the start of the record in the array
+	 * @param weatherStationType the weather station type
+	 * @param reading the reading to populate, its timestamp is set to the current time
+	 * @return true if the record was valid and the reading populated, false if the record is invalid
+	 * @throws IllegalArgumentException if the weatherStationType does not validate
+	 */
+	public static boolean parseWeatherRecord(byte[] bytes, int offset, int weatherStationType, WeatherReading reading) {
+		return parseWeatherRecord(bytes, offset, SensorRegistry.getWeatherStation(weatherStationType), reading);
+	}
+	
+	/**
+	 * parse a binary weather record into an existing WeatherReading object using a weather
+	 * station looked up in advance from the SensorRegistry class, avoiding the lookup for
+	 * each record
+	 * 
+	 * @param bytes an array of bytes containing the record
+	 * @param offset the offset of the start of the record in the array
+	 * @param station the weather station that produced the record
+	 * @param reading the reading to populate, its timestamp is set to the current time
+	 * @return true if the record was valid and the reading populated, false if the record is invalid
+	 */
+	public static boolean parseWeatherRecord(byte[] bytes, int offset, WeatherStation station, WeatherReading reading) {
+		return parseWeatherRecord(bytes, offset, station, reading, null);
+	}
+	
+	/**
+	 * parse a binary weather record into an existing WeatherReading object using a weather
+	 * station looked up in advance, counting the record if it is rejected
+	 * 
+	 * @param bytes an array of bytes containing the record
+	 * @param offset the offset of the start of the record in the array
+	 * @param station the weather station that produced the record
+	 * @param reading the reading to populate, its timestamp is set to the current time
+	 * @param rejected the counter of rejected records for the stream the record came from, or null
+	 * @return true if the record was valid and the reading populated, false if the record is invalid
+	 */
+	public static boolean parseWeatherRecord(byte[] bytes, int offset, WeatherStation station, WeatherReading reading, RejectedRecordCounter rejected) {
 		
-		// validate the parameters
-		if(bytes.length != 99) {
-			throw new SensorUtilsException("record is too short, expected 99 bytes got " + bytes.length + " bytes");
+		if(offset < 0) {
+			if(rejected != null) {
+				rejected.increment(REJECTED_LENGTH);
+			}
+			return false;
 		}
 		
-		WeatherReading mWeatherReading = new WeatherReading();
+		return parseWeatherRecord(bytes, offset, bytes.length - offset, station, reading, rejected);
+	}
+	
+	/**
+	 * parse a binary weather record starting at the current position of a buffer into an
+	 * existing WeatherReading object, the position of the buffer is not changed
+	 * 
+	 * @param buffer a buffer containing the record
+	 * @param weatherStationType the weather station type
+	 * @param reading the reading to populate, its timestamp is set to the current time
+	 * @return true if the record was valid and the reading populated, false if the record is invalid
+	 * @throws IllegalArgumentException if the weatherStationType does not validate
+	 */
+	public static boolean parseWeatherRecord(ByteBuffer buffer, int weatherStationType, WeatherReading reading) {
+		return parseWeatherRecord(buffer, SensorRegistry.getWeatherStation(weatherStationType), reading, null);
+	}
+	
+	/*
+	 * parse a record starting at the current position of a buffer without changing the position
+	 */
+	private static boolean parseWeatherRecord(ByteBuffer buffer, WeatherStation station, WeatherReading reading, RejectedRecordCounter rejected) {
+		
+		if(buffer.hasArray()) {
+			// parse the backing array in place
+			return parseWeatherRecord(
+					buffer.array(), 
+					buffer.arrayOffset() + buffer.position(), 
+					buffer.remaining(), 
+					station, 
+					reading,
+					rejected
+				);
+		}
 		
-		/*
-		 * parse the record
-		 */
-		// validate the header
-		if(getStringFromBytes(bytes[0], bytes[1], bytes[2]).equals("LOO") == false) {
-			throw new SensorUtilsException("missing record header");
+		// copy the record out of a direct or mapped buffer into a reusable array
+		byte[] mBytes = recordBuffer.get();
+		
+		if(mBytes == null || mBytes.length < station.getRecordSize()) {
+			mBytes = new byte[station.getRecordSize()];
+			recordBuffer.set(mBytes);
 		}
 		
-		int mIntValue;
-		short mShortValue;
+		int mLength = Math.min(buffer.remaining(), station.getRecordSize());
 		
-		// barometric trend
-		mIntValue = (int) bytes[3];
-		mWeatherReading.setBarometricTrend(mIntValue);
+		for(int i = 0; i < mLength; i++) {
+			mBytes[i] = buffer.get(buffer.position() + i);
+		}
 		
-		// barometer
-		mShortValue = getShortFromBytes(bytes[7], bytes[8]);
-		mWeatherReading.setBarometer(
-				UnitConversionUtils.convertBarometricPressure(
-						(float) mShortValue / 1000, 
-						UnitConversionUtils.HG_INCH, 
-						UnitConversionUtils.HPA
-					)
-				);
+		return parseWeatherRecord(mBytes, 0, mLength, station, reading, rejected);
+	}
+	
+	/*
+	 * parse a record using at most the specified number of bytes from the array, counting rejected records
+	 */
+	private static boolean parseWeatherRecord(byte[] bytes, int offset, int length, WeatherStation station, WeatherReading reading, RejectedRecordCounter rejected) {
 		
-		// temperature
-		mShortValue = getShortFromBytes(bytes[12], bytes[13]);
-		mWeatherReading.setTemperature(
-				UnitConversionUtils.comvertTemperature(
-						(float) mShortValue / 10, 
-						UnitConversionUtils.FAHRENHEIT, 
-						UnitConversionUtils.CELSIUS)
-				);
+		int mResult = station.parseRecord(bytes, offset, length, reading);
 		
-		// wind speed
-		mIntValue = bytes[14] & 0xff;
-		mWeatherReading.setWindSpeed(
-				UnitConversionUtils.convertSpeed(
-						(float) mIntValue, 
-						UnitConversionUtils.MPH, 
-						UnitConversionUtils.KPH)
-				);
+		if(mResult == WeatherStation.RECORD_VALID) {
+			return true;
+		}
 		
-		// average wind speed
-		mIntValue = bytes[15] & 0xff;
-		mWeatherReading.setAverageWindSpeed(
-				UnitConversionUtils.convertSpeed(
-						(float) mIntValue, 
-						UnitConversionUtils.MPH, 
-						UnitConversionUtils.KPH)
-				);
+		if(rejected != null) {
+			rejected.increment(mResult);
+		}
+		return false;
+	}
+	
+	/**
+	 * parse a batch of consecutive binary weather records, such as the records downloaded
+	 * from the logger of a weather station, adding the valid records to a list. large
+	 * batches are split across the available processors
+	 * 
+	 * @param bytes an array of bytes containing the records
+	 * @param offset the offset of the first record in the array
+	 * @param count the number of records to parse
+	 * @param weatherStationType the weather station type
+	 * @param timestamp the timestamp of the first record
+	 * @param interval the number of milliseconds between consecutive records
+	 * @param readings the list to add the readings to, in record order
+	 * @return the number of valid records
+	 * @throws IllegalArgumentException if the weatherStationType does not validate or the array is too short
+	 * @throws SensorUtilsException if the batch could not be parsed
+	 */
+	public static int parseWeatherRecords(byte[] bytes, int offset, int count, int weatherStationType, long timestamp, long interval, ReadingsList readings) throws SensorUtilsException {
 		
-		// wind direction
-		mShortValue = getShortFromBytes(bytes[16], bytes[17]);
-		mWeatherReading.setWindDirection(mShortValue);
-		
-		// humidity
-		mIntValue = bytes[33] & 0xff;
-		mWeatherReading.setHumidity(mShortValue);
-		
-		// rain rate
-		mShortValue = getShortFromBytes(bytes[41], bytes[42]);
-		mWeatherReading.setRainRate(
-				SensorUtils.convertRainClicksToMillimeters(
-						mShortValue, 
-						VANTAGE_VUE
-					)
-				);
+		WeatherReading[] mReadings = new WeatherReading[count];
 		
-		// rain today
-		mShortValue = getShortFromBytes(bytes[50], bytes[51]);
-		mWeatherReading.setRainToday(
-				SensorUtils.convertRainClicksToMillimeters(
-						mShortValue, 
-						VANTAGE_VUE
-					)
-				);
+		int mValid = parseWeatherRecords(bytes, offset, count, weatherStationType, timestamp, interval, mReadings);
+		
+		for(int i = 0; i < count; i++) {
+			if(mReadings[i] != null) {
+				readings.add(mReadings[i]);
+			}
+		}
 		
-		return mWeatherReading;
+		return mValid;
 	}
 	
-	private static String getStringFromBytes(byte... bytes) {
+	/**
+	 * parse a batch of consecutive binary weather records into an array of readings, large
+	 * batches are split across the available processors
+	 * 
+	 * @param bytes an array of bytes containing the records
+	 * @param offset the offset of the first record in the array
+	 * @param count the number of records to parse
+	 * @param weatherStationType the weather station type
+	 * @param timestamp the timestamp of the first record
+	 * @param interval the number of milliseconds between consecutive records
+	 * @param readings an array to hold the readings, an element is null if the matching record is invalid
+	 * @return the number of valid records
+	 * @throws IllegalArgumentException if the weatherStationType does not validate or an array is too short
+	 * @throws SensorUtilsException if the batch could not be parsed
+	 */
+	public static int parseWeatherRecords(byte[] bytes, int offset, int count, int weatherStationType, long timestamp, long interval, WeatherReading[] readings) throws SensorUtilsException {
+		
+		if(offset < 0 || (long) offset + (long) count * SensorRegistry.getWeatherStation(weatherStationType).getRecordSize() > bytes.length) {
+			throw new IllegalArgumentException("the array does not contain the required number of records");
+		}
+		
+		ByteBuffer mBuffer = ByteBuffer.wrap(bytes);
+		mBuffer.position(offset);
+		
+		return parseWeatherRecords(mBuffer, count, weatherStationType, timestamp, interval, readings);
+	}
+	
+	/**
+	 * parse a batch of consecutive binary weather records starting at the current position
+	 * of a buffer, such as a memory mapped region of a file, into an array of readings. large
+	 * batches are split across the available processors. the position of the buffer is not changed
+	 * 
+	 * @param buffer the buffer containing the records
+	 * @param count the number of records to parse
+	 * @param weatherStationType the weather station type
+	 * @param timestamp the timestamp of the first record
+	 * @param interval the number of milliseconds between consecutive records
+	 * @param readings an array to hold the readings, an element is null if the matching record is invalid
+	 * @return the number of valid records
+	 * @throws IllegalArgumentException if the weatherStationType does not validate or the buffer or array is too short
+	 * @throws SensorUtilsException if the batch could not be parsed
+	 */
+	public static int parseWeatherRecords(ByteBuffer buffer, int count, int weatherStationType, long timestamp, long interval, WeatherReading[] readings) throws SensorUtilsException {
+		return parseWeatherRecords(buffer, count, weatherStationType, timestamp, interval, readings, null);
+	}
+	
+	/**
+	 * parse a batch of consecutive binary weather records starting at the current position
+	 * of a buffer into an array of readings, counting the records that are rejected. large
+	 * batches are split across the available processors. the position of the buffer is not changed
+	 * 
+	 * @param buffer the buffer containing the records
+	 * @param count the number of records to parse
+	 * @param weatherStationType the weather station type
+	 * @param timestamp the timestamp of the first record
+	 * @param interval the number of milliseconds between consecutive records
+	 * @param readings an array to hold the readings, an element is null if the matching record is invalid
+	 * @param rejected the counter of rejected records for the stream the records came from, or null
+	 * @return the number of valid records
+	 * @throws IllegalArgumentException if the weatherStationType does not validate or the buffer or array is too short
+	 * @throws SensorUtilsException if the batch could not be parsed
+	 */
+	public static int parseWeatherRecords(ByteBuffer buffer, int count, int weatherStationType, long timestamp, long interval, WeatherReading[] readings, RejectedRecordCounter rejected) throws SensorUtilsException {
+		
+		WeatherStation mStation = SensorRegistry.getWeatherStation(weatherStationType);
+		
+		if((long) count * mStation.getRecordSize() > buffer.remaining()) {
+			throw new IllegalArgumentException("the buffer does not contain the required number of records");
+		}
+		
+		if(readings.length < count) {
+			throw new IllegalArgumentException("the readings array is too short");
+		}
+		
+		// decode small batches on the calling thread
+		int mProcessors = Runtime.getRuntime().availableProcessors();
+		
+		if(count < PARALLEL_BATCH_THRESHOLD || mProcessors < 2) {
+			return new BatchTask(buffer, 0, count, mStation, timestamp, interval, readings, rejected).call();
+		}
+		
+		// split the batch into one range per processor
+		List<Future<Integer>> mResults = new ArrayList<Future<Integer>>(mProcessors);
+		int mRangeSize = (count + mProcessors - 1) / mProcessors;
+		
+		for(int mFirst = 0; mFirst < count; mFirst += mRangeSize) {
+			mResults.add(BatchExecutor.EXECUTOR.submit(
+					new BatchTask(buffer, mFirst, Math.min(count, mFirst + mRangeSize), mStation, timestamp, interval, readings, rejected)
+				));
+		}
+		
+		int mValid = 0;
+		
 		try {
-			return new String(bytes, "ASCII");
-		} catch (UnsupportedEncodingException e) {
-			return null;
+			for(Future<Integer> mResult : mResults) {
+				mValid += mResult.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SensorUtilsException("interrupted while parsing the batch", e);
+		} catch (ExecutionException e) {
+			throw new SensorUtilsException("unable to parse the batch", e.getCause());
 		}
+		
+		return mValid;
 	}
 	
-	private static short getShortFromBytes(byte byte01, byte byte02) {
-		return (short) ((byte01 & 0xff) | (byte02 << 8));
+	/*
+	 * a task which parses a range of the records in a batch
+	 */
+	private static class BatchTask implements Callable<Integer> {
+		
+		private ByteBuffer buffer;
+		private int first;
+		private int end;
+		private WeatherStation station;
+		private long timestamp;
+		private long interval;
+		private WeatherReading[] readings;
+		private RejectedRecordCounter rejected;
+		
+		private BatchTask(ByteBuffer buffer, int first, int end, WeatherStation station, long timestamp, long interval, WeatherReading[] readings, RejectedRecordCounter rejected) {
+			// each task uses its own view of the buffer so positions are not shared
+			this.buffer = buffer.duplicate();
+			this.first = first;
+			this.end = end;
+			this.station = station;
+			this.timestamp = timestamp;
+			this.interval = interval;
+			this.readings = readings;
+			this.rejected = rejected;
+		}
+		
+		public Integer call() {
+			
+			int mRecordSize = station.getRecordSize();
+			int mStart = buffer.position();
+			int mValid = 0;
+			WeatherReading mReading = null;
+			
+			for(int i = first; i < end; i++) {
+				
+				if(mReading == null) {
+					mReading = new WeatherReading();
+				}
+				
+				buffer.position(mStart + i * mRecordSize);
+				
+				if(parseWeatherRecord(buffer, station, mReading, rejected)) {
+					mReading.setTimestamp(timestamp + i * interval);
+					readings[i] = mReading;
+					mReading = null;
+					mValid++;
+				} else {
+					readings[i] = null;
+				}
+			}
+			
+			return mValid;
+		}
+	}
+	
+	/*
+	 * holder for the shared pool of threads used to parse large batches, created on first use
+	 */
+	private static class BatchExecutor {
+		
+		private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(
+				Runtime.getRuntime().availableProcessors(), 
+				new ThreadFactory() {
+					public Thread newThread(Runnable runnable) {
+						Thread mThread = new Thread(runnable, "magdaa-batch-parser");
+						mThread.setDaemon(true);
+						return mThread;
+					}
+				}
+			);
+	}
+	
+	/**
+	 * calculate the CRC-CCITT checksum used by Davis weather stations, running the
+	 * calculation over a record that includes its trailing checksum returns zero
+	 * 
+	 * @param bytes an array of bytes
+	 * @param offset the offset of the first byte to include in the checksum
+	 * @param length the number of bytes to include in the checksum
+	 * @return the checksum
+	 */
+	public static int calculateCrc(byte[] bytes, int offset, int length) {
+		
+		int mCrc = 0;
+		
+		for(int i = offset; i < offset + length; i++) {
+			mCrc = (CRC_TABLE[((mCrc >>> 8) ^ bytes[i]) & 0xff] ^ (mCrc << 8)) & 0xffff;
+		}
+		
+		return mCrc;
+	}
+	
+	/*
+	 * build the lookup table for the CRC-CCITT polynomial 0x1021
+	 */
+	private static int[] buildCrcTable() {
+		
+		int[] mTable = new int[256];
+		int mCrc;
+		
+		for(int i = 0; i < 256; i++) {
+			mCrc = i << 8;
+			
+			for(int j = 0; j < 8; j++) {
+				if((mCrc & 0x8000) != 0) {
+					mCrc = (mCrc << 1) ^ 0x1021;
+				} else {
+					mCrc = mCrc << 1;
+				}
+			}
+			
+			mTable[i] = mCrc & 0xffff;
+		}
+		
+		return mTable;
 	}
 	
 	/**
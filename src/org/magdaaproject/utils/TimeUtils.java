@@ -48,6 +48,11 @@ public class TimeUtils {
 	 */
 	public static final String DEFAULT_LONG_DATE_FORMAT = "dd/MM/yyyy HH:mm:ss z";
 	
+	/**
+	 * a constant representing one minute in milliseconds
+	 */
+	public static final long ONE_MINUTE_IN_MILLISECONDS = 60000;
+	
 	/**
 	 * a constant representing one hour in milliseconds
 	 */
@@ -70,6 +70,110 @@ public class UnitConversionUtils {
 	 */
 	public static final int INCH = 31;
 	
+	/**
+	 * the number of kilometers per hour in one mile per hour
+	 */
+	public static final float MPH_TO_KPH = 1.609344f;
+	
+	/**
+	 * the number of hPa in one inch of mercury
+	 */
+	public static final float HG_INCH_TO_HPA = 33.8638866667f;
+	
+	/*
+	 * private class level constants
+	 */
+	private static final int[] SCALES = {CELSIUS, FAHRENHEIT, KELVIN, KPH, MPH, HPA, HG_INCH, MILLIMETRE, INCH};
+	
+	/*
+	 * the converters between every pair of scales of the same kind, indexed by the from
+	 * scale and then by the units digit of the to scale. a row is null for an invalid scale
+	 */
+	private static final UnitConverter[][] converters = new UnitConverter[INCH + 1][];
+	
+	static {
+		for(int mFromScale : SCALES) {
+			converters[mFromScale] = new UnitConverter[10];
+			
+			for(int mToScale : SCALES) {
+				if(mFromScale / 10 == mToScale / 10) {
+					converters[mFromScale][mToScale % 10] = createConverter(mFromScale, mToScale);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * get a converter between two scales of the same kind of measurement, the converters
+	 * are created once and shared so getting one does not allocate
+	 * 
+	 * @param fromScale the scale to convert from, as defined by one of the constants in this class
+	 * @param toScale the scale to convert to, as defined by one of the constants in this class
+	 * @return a converter between the two scales, converting between the same scale returns the values unchanged
+	 * @throws IllegalArgumentException if a scale is invalid or the scales measure different things
+	 */
+	public static UnitConverter getConverter(int fromScale, int toScale) {
+		
+		if(fromScale < 0 || fromScale >= converters.length || converters[fromScale] == null) {
+			throw new IllegalArgumentException("the fromScale is invalid");
+		}
+		
+		if(toScale < 0 || toScale >= converters.length || converters[toScale] == null) {
+			throw new IllegalArgumentException("the toScale is invalid");
+		}
+		
+		// the kind of measurement is given by the tens digit of the constants
+		if(fromScale / 10 != toScale / 10) {
+			throw new IllegalArgumentException("the fromScale and toScale measure different things");
+		}
+		
+		return converters[fromScale][toScale % 10];
+	}
+	
+	/*
+	 * create the converter between two valid scales of the same kind of measurement
+	 */
+	private static UnitConverter createConverter(int fromScale, int toScale) {
+		
+		// express each scale as a scale and offset from the base scale of its kind
+		double[] mFrom = getBaseConversion(fromScale);
+		double[] mTo = getBaseConversion(toScale);
+		
+		// base = value * fromScale + fromOffset, result = (base - toOffset) / toScale
+		return new UnitConverter(
+				fromScale, 
+				toScale, 
+				mFrom[0] / mTo[0], 
+				(mFrom[1] - mTo[1]) / mTo[0]
+			);
+	}
+	
+	/*
+	 * get the scale and offset that convert a value into the base scale for its kind of
+	 * measurement, celsius, kilometers per hour, hPa or millimetres
+	 */
+	private static double[] getBaseConversion(int scale) {
+		switch(scale) {
+		case CELSIUS:
+		case KPH:
+		case HPA:
+		case MILLIMETRE:
+			return new double[] {1d, 0d};
+		case FAHRENHEIT:
+			return new double[] {5d / 9d, -32d * 5d / 9d};
+		case KELVIN:
+			return new double[] {1d, -273.15f};
+		case MPH:
+			return new double[] {MPH_TO_KPH, 0d};
+		case HG_INCH:
+			return new double[] {HG_INCH_TO_HPA, 0d};
+		case INCH:
+			return new double[] {25.4d, 0d};
+		default:
+			throw new IllegalArgumentException("the scale is invalid");
+		}
+	}
+	
 	
 	/**
 	 * convert a temperature value from one scale to another
@@ -181,13 +285,11 @@ public class UnitConversionUtils {
 	}
 	
 	private static float convertFromMphToKph(float mph) {
-		float conversionFactor = 1.609344f;
-		return mph * conversionFactor;
+		return mph * MPH_TO_KPH;
 	}
 	
 	private static float convertFromKphToMph(float kph) {
-		float conversionFactor = 1.609344f;
-		return kph / conversionFactor;
+		return kph / MPH_TO_KPH;
 	}
 	
 	/**
@@ -222,13 +324,11 @@ public class UnitConversionUtils {
 	}
 	
 	private static float convertFromHgInchToHpa(float hgInch) {
-		float conversionFactor = 33.8638866667f;
-		return hgInch * conversionFactor;
+		return hgInch * HG_INCH_TO_HPA;
 	}
 	
 	private static float convertFromHpaToHgInch(float hpa) {
-		float conversionFactor = 33.8638866667f;
-		return hpa / conversionFactor;
+		return hpa / HG_INCH_TO_HPA;
 	}
 	
 	/**
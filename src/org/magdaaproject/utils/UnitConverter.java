@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2013 The MaGDAA Project
+ *
+ * This file is part of the MaGDAA Library Software
+ *
+ * MaGDAA Library Software is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This source code is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this source code; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.magdaaproject.utils;
+
+/**
+ * a conversion between two units of measurement, such as celsius to fahrenheit, obtained
+ * from the getConverter method of the UnitConversionUtils class
+ *
+ * every conversion supported by this library is linear, so the conversion is folded into
+ * a single scale and offset when the converter is created. converting a value is then
+ * one multiply and one add in double precision, rounded once to a float, with no checking
+ * of the scales. the float arithmetic of the methods of the UnitConversionUtils class rounds
+ * after each step, so a result of a converter can differ from them in the last few bits
+ */
+public final class UnitConverter {
+
+	/*
+	 * private class level variables
+	 */
+	private final int fromScale;
+	private final int toScale;
+	private final double scale;
+	private final double offset;
+
+	/*
+	 * construct a new converter, instances are created by the UnitConversionUtils class
+	 */
+	UnitConverter(int fromScale, int toScale, double scale, double offset) {
+		this.fromScale = fromScale;
+		this.toScale = toScale;
+		this.scale = scale;
+		this.offset = offset;
+	}
+
+	/**
+	 * convert a value
+	 *
+	 * @param value the value in the from scale
+	 * @return the value in the to scale
+	 */
+	public float apply(float value) {
+		return (float) (value * scale + offset);
+	}
+
+	/**
+	 * convert an array of values in place
+	 *
+	 * @param values an array of values in the from scale
+	 * @param offset the index of the first value to convert
+	 * @param length the number of values to convert
+	 */
+	public void apply(float[] values, int offset, int length) {
+		apply(values, offset, values, offset, length);
+	}
+
+	/**
+	 * convert an array of values into another array
+	 *
+	 * @param source an array of values in the from scale
+	 * @param sourceOffset the index of the first value to convert
+	 * @param destination an array to hold the values in the to scale, may be the same array as the source
+	 * @param destinationOffset the index to store the first converted value at
+	 * @param length the number of values to convert
+	 */
+	public void apply(float[] source, int sourceOffset, float[] destination, int destinationOffset, int length) {
+
+		double mScale = scale;
+		double mOffset = offset;
+
+		// a simple counted loop with no calls, so that it can be unrolled and vectorised
+		for(int i = 0; i < length; i++) {
+			destination[destinationOffset + i] = (float) (source[sourceOffset + i] * mScale + mOffset);
+		}
+	}
+
+	/**
+	 * @return the scale converted from, as defined by one of the constants in the UnitConversionUtils class
+	 */
+	public int getFromScale() {
+		return fromScale;
+	}
+
+	/**
+	 * @return the scale converted to, as defined by one of the constants in the UnitConversionUtils class
+	 */
+	public int getToScale() {
+		return toScale;
+	}
+
+	/**
+	 * @return true if the converter returns values unchanged
+	 */
+	public boolean isIdentity() {
+		return scale == 1d && offset == 0d;
+	}
+}
@@ -0,0 +1,341 @@
+/*
+ * Copyright (C) 2013 The MaGDAA Project
+ *
+ * This file is part of the MaGDAA Library Software
+ *
+ * MaGDAA Library Software is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This source code is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this source code; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.magdaaproject.utils.readings;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * a class which evaluates a set of alert rules against a stream of sensor readings as
+ * each reading is added, notifying a listener as soon as a rule is raised or cleared
+ *
+ * the evaluator keeps the state of each rule, so it never needs to scan earlier readings.
+ * the windows of the rules that compare an aggregate are maintained using a
+ * RollingStatistics object, so adding a reading is an amortised constant time operation
+ * for each rule. the readings must be supplied in timestamp order and from a single
+ * station, any reading older than the last reading added is ignored
+ */
+public class AlertEvaluator {
+
+	/*
+	 * private class level constants
+	 */
+	private static final long NOT_MET = Long.MIN_VALUE;
+
+	/*
+	 * private class level variables
+	 */
+	private AlertListener listener;
+	private List<RuleState> rules = new ArrayList<RuleState>();
+
+	private long lastTimestamp = Long.MIN_VALUE;
+	private int ignoredCount = 0;
+
+	/**
+	 * construct a new evaluator
+	 *
+	 * @param listener the listener to notify when a rule is raised or cleared
+	 * @throws IllegalArgumentException if the listener is missing
+	 */
+	public AlertEvaluator(AlertListener listener) {
+
+		if(listener == null) {
+			throw new IllegalArgumentException("the listener parameter is required");
+		}
+
+		this.listener = listener;
+	}
+
+	/**
+	 * add a rule to the evaluator, the rule is evaluated against the readings added after this point
+	 *
+	 * @param rule the rule to add
+	 * @throws IllegalArgumentException if the rule is missing or has already been added
+	 */
+	public void addRule(AlertRule rule) {
+
+		if(rule == null) {
+			throw new IllegalArgumentException("the rule parameter is required");
+		}
+
+		if(indexOf(rule) != -1) {
+			throw new IllegalArgumentException("the rule has already been added");
+		}
+
+		rules.add(new RuleState(rule));
+	}
+
+	/**
+	 * remove a rule from the evaluator, the listener is not notified even if the rule is raised
+	 *
+	 * @param rule the rule to remove
+	 * @return true if the rule was removed
+	 */
+	public boolean removeRule(AlertRule rule) {
+
+		int mIndex = indexOf(rule);
+
+		if(mIndex == -1) {
+			return false;
+		}
+
+		rules.remove(mIndex);
+
+		return true;
+	}
+
+	/**
+	 * add a reading, evaluating each of the rules for a field that the reading contains. a
+	 * field with a NaN value is treated as missing, and does not change the state of its rules
+	 *
+	 * @param reading the reading to add
+	 */
+	public void add(SensorReading reading) {
+
+		long mTimestamp = reading.getTimestamp();
+
+		if(mTimestamp < lastTimestamp) {
+			ignoredCount++;
+			return;
+		}
+
+		lastTimestamp = mTimestamp;
+
+		RuleState mState;
+		AlertRule mRule;
+		float mValue;
+
+		for(int i = 0; i < rules.size(); i++) {
+			mState = rules.get(i);
+			mRule = mState.rule;
+
+			if(ReadingFields.hasField(reading, mRule.getField()) == false) {
+				continue;
+			}
+
+			mValue = ReadingFields.getValue(reading, mRule.getField());
+
+			// a NaN value is a missing value, so the field is skipped as if the reading did not contain it
+			if(Float.isNaN(mValue)) {
+				continue;
+			}
+
+			if(mState.statistics != null) {
+				mValue = mState.addToWindow(mTimestamp, mValue);
+			}
+
+			mState.value = mValue;
+
+			if(mRule.matches(mValue)) {
+				if(mState.since == NOT_MET) {
+					mState.since = mTimestamp;
+				}
+
+				if(mState.raised == false && mTimestamp - mState.since >= mRule.getDuration()) {
+					mState.raised = true;
+					listener.onAlertRaised(mRule, reading, mValue);
+				}
+			} else {
+				mState.since = NOT_MET;
+
+				if(mState.raised) {
+					mState.raised = false;
+					listener.onAlertCleared(mRule, reading, mValue);
+				}
+			}
+		}
+	}
+
+	/**
+	 * add all of the readings in a collection of readings
+	 *
+	 * @param readings the readings to add, in timestamp order
+	 */
+	public void addAll(Iterable<? extends SensorReading> readings) {
+		for(SensorReading mReading : readings) {
+			add(mReading);
+		}
+	}
+
+	/**
+	 * determine if a rule is currently raised
+	 *
+	 * @param rule the rule
+	 * @return true if the rule is raised
+	 * @throws IllegalArgumentException if the rule has not been added to the evaluator
+	 */
+	public boolean isRaised(AlertRule rule) {
+		return getState(rule).raised;
+	}
+
+	/**
+	 * get the value most recently compared with the threshold of a rule
+	 *
+	 * @param rule the rule
+	 * @return the value, or NaN if no reading containing the field of the rule has been added
+	 * @throws IllegalArgumentException if the rule has not been added to the evaluator
+	 */
+	public float getValue(AlertRule rule) {
+		return getState(rule).value;
+	}
+
+	/**
+	 * @return the rules that are currently raised
+	 */
+	public List<AlertRule> getRaisedRules() {
+
+		List<AlertRule> mRules = new ArrayList<AlertRule>();
+
+		for(RuleState mState : rules) {
+			if(mState.raised) {
+				mRules.add(mState.rule);
+			}
+		}
+
+		return mRules;
+	}
+
+	/**
+	 * reset the state of all of the rules, as if no readings had been added. the listener
+	 * is not notified of any rules that were raised
+	 */
+	public void reset() {
+
+		for(RuleState mState : rules) {
+			mState.reset();
+		}
+
+		lastTimestamp = Long.MIN_VALUE;
+	}
+
+	/**
+	 * @return the number of readings that were ignored because they were out of order
+	 */
+	public int getIgnoredCount() {
+		return ignoredCount;
+	}
+
+	/*
+	 * find the index of the state of a rule
+	 */
+	private int indexOf(AlertRule rule) {
+
+		for(int i = 0; i < rules.size(); i++) {
+			if(rules.get(i).rule == rule) {
+				return i;
+			}
+		}
+
+		return -1;
+	}
+
+	private RuleState getState(AlertRule rule) {
+
+		int mIndex = indexOf(rule);
+
+		if(mIndex == -1) {
+			throw new IllegalArgumentException("the rule has not been added to the evaluator");
+		}
+
+		return rules.get(mIndex);
+	}
+
+	/*
+	 * the state of a single rule
+	 */
+	private static class RuleState {
+
+		private AlertRule rule;
+
+		// the aggregate of the window, and the timestamps of the values in the window
+		private RollingStatistics statistics;
+		private long[] timestamps;
+		private int head;
+		private int size;
+
+		private float value;
+		private long since;
+		private boolean raised;
+
+		private RuleState(AlertRule rule) {
+
+			this.rule = rule;
+
+			if(rule.getAggregate() != AlertRule.VALUE) {
+				statistics = new RollingStatistics();
+				timestamps = new long[16];
+			}
+
+			reset();
+		}
+
+		/*
+		 * add a value to the window, remove the values that have left the window and return the aggregate
+		 */
+		private float addToWindow(long timestamp, float value) {
+
+			if(size == timestamps.length) {
+				long[] mTimestamps = new long[size * 2];
+
+				for(int i = 0; i < size; i++) {
+					mTimestamps[i] = timestamps[(head + i) % timestamps.length];
+				}
+
+				timestamps = mTimestamps;
+				head = 0;
+			}
+
+			timestamps[(head + size) % timestamps.length] = timestamp;
+			size++;
+			statistics.add(value);
+
+			// the window includes values newer than the length of the window before the latest value
+			long mStart = timestamp - rule.getWindow();
+
+			while(timestamps[head] <= mStart) {
+				head = (head + 1) % timestamps.length;
+				size--;
+				statistics.removeOldest();
+			}
+
+			switch(rule.getAggregate()) {
+			case AlertRule.MINIMUM:
+				return statistics.getMinimum();
+			case AlertRule.MAXIMUM:
+				return statistics.getMaximum();
+			default:
+				return statistics.getMean();
+			}
+		}
+
+		private void reset() {
+
+			if(statistics != null) {
+				statistics.clear();
+				head = 0;
+				size = 0;
+			}
+
+			value = Float.NaN;
+			since = NOT_MET;
+			raised = false;
+		}
+	}
+}
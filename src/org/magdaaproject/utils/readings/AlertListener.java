@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2013 The MaGDAA Project
+ *
+ * This file is part of the MaGDAA Library Software
+ *
+ * MaGDAA Library Software is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This source code is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this source code; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.magdaaproject.utils.readings;
+
+/**
+ * an interface implemented by classes that are notified when the alert rules evaluated
+ * by an AlertEvaluator are raised and cleared
+ */
+public interface AlertListener {
+
+	/**
+	 * called when the condition of a rule has been met for the duration of the rule
+	 *
+	 * @param rule the rule that has been raised
+	 * @param reading the reading that raised the rule
+	 * @param value the value that was compared with the threshold of the rule
+	 */
+	public void onAlertRaised(AlertRule rule, SensorReading reading, float value);
+
+	/**
+	 * called when the condition of a rule that has been raised is no longer met
+	 *
+	 * @param rule the rule that has been cleared
+	 * @param reading the reading that cleared the rule
+	 * @param value the value that was compared with the threshold of the rule
+	 */
+	public void onAlertCleared(AlertRule rule, SensorReading reading, float value);
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2013 The MaGDAA Project
+ *
+ * This file is part of the MaGDAA Library Software
+ *
+ * MaGDAA Library Software is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This source code is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this source code; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.magdaaproject.utils.readings;
+
+/**
+ * a rule which compares one field of the readings, or an aggregate of the field over a
+ * sliding time window, with a threshold. for example "wind speed above 60 for five
+ * minutes" or "mean rain rate over the last hour above 5"
+ *
+ * the rule is raised once the condition has been met by every reading for the duration
+ * of the rule, and cleared by the first reading that does not meet the condition. rules
+ * are immutable and are evaluated by an AlertEvaluator, which holds the state of each rule
+ */
+public class AlertRule {
+
+	/*
+	 * public class level constants
+	 */
+
+	/**
+	 * compare the value of the field in each reading
+	 */
+	public static final int VALUE = 0;
+
+	/**
+	 * compare the mean of the field over the window
+	 */
+	public static final int MEAN = 1;
+
+	/**
+	 * compare the minimum of the field over the window
+	 */
+	public static final int MINIMUM = 2;
+
+	/**
+	 * compare the maximum of the field over the window
+	 */
+	public static final int MAXIMUM = 3;
+
+	/**
+	 * the condition is met when the value is greater than the threshold
+	 */
+	public static final int ABOVE = 0;
+
+	/**
+	 * the condition is met when the value is less than the threshold
+	 */
+	public static final int BELOW = 1;
+
+	/*
+	 * private class level variables
+	 */
+	private String name;
+	private int field;
+	private int aggregate;
+	private long window;
+	private int comparison;
+	private float threshold;
+	private long duration;
+
+	/**
+	 * construct a new rule which compares the value of the field in each reading
+	 *
+	 * @param name the name of the rule
+	 * @param field the field to compare, one of the field constants defined by the ReadingFields class
+	 * @param comparison how the value is compared to the threshold, ABOVE or BELOW
+	 * @param threshold the threshold
+	 * @param duration the time in milliseconds that the condition must be met for before the rule is raised
+	 */
+	public AlertRule(String name, int field, int comparison, float threshold, long duration) {
+		this(name, field, VALUE, 0, comparison, threshold, duration);
+	}
+
+	/**
+	 * construct a new rule
+	 *
+	 * @param name the name of the rule
+	 * @param field the field to compare, one of the field constants defined by the ReadingFields class
+	 * @param aggregate the value to compare, VALUE, MEAN, MINIMUM or MAXIMUM
+	 * @param window the length of the window in milliseconds, ignored if the aggregate is VALUE
+	 * @param comparison how the value is compared to the threshold, ABOVE or BELOW
+	 * @param threshold the threshold
+	 * @param duration the time in milliseconds that the condition must be met for before the rule is raised
+	 * @throws IllegalArgumentException if any of the parameters are invalid
+	 */
+	public AlertRule(String name, int field, int aggregate, long window, int comparison, float threshold, long duration) {
+
+		if(name == null) {
+			throw new IllegalArgumentException("the name parameter is required");
+		}
+
+		if(field < 0 || field >= ReadingFields.FIELD_COUNT) {
+			throw new IllegalArgumentException("the field is invalid");
+		}
+
+		if(aggregate < VALUE || aggregate > MAXIMUM) {
+			throw new IllegalArgumentException("the aggregate is invalid");
+		}
+
+		if(aggregate != VALUE && window <= 0) {
+			throw new IllegalArgumentException("the window must be greater than zero");
+		}
+
+		if(comparison != ABOVE && comparison != BELOW) {
+			throw new IllegalArgumentException("the comparison is invalid");
+		}
+
+		if(Float.isNaN(threshold)) {
+			throw new IllegalArgumentException("the threshold must be a number");
+		}
+
+		if(duration < 0) {
+			throw new IllegalArgumentException("the duration must not be negative");
+		}
+
+		this.name = name;
+		this.field = field;
+		this.aggregate = aggregate;
+		this.window = aggregate == VALUE ? 0 : window;
+		this.comparison = comparison;
+		this.threshold = threshold;
+		this.duration = duration;
+	}
+
+	/**
+	 * determine if a value meets the condition of the rule
+	 *
+	 * @param value the value to compare with the threshold
+	 * @return true if the value meets the condition, a value of NaN never meets the condition
+	 */
+	public boolean matches(float value) {
+		if(comparison == ABOVE) {
+			return value > threshold;
+		} else {
+			return value < threshold;
+		}
+	}
+
+	/**
+	 * @return the name of the rule
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return the field compared by the rule
+	 */
+	public int getField() {
+		return field;
+	}
+
+	/**
+	 * @return the value compared by the rule, VALUE, MEAN, MINIMUM or MAXIMUM
+	 */
+	public int getAggregate() {
+		return aggregate;
+	}
+
+	/**
+	 * @return the length of the window in milliseconds, zero if the aggregate is VALUE
+	 */
+	public long getWindow() {
+		return window;
+	}
+
+	/**
+	 * @return how the value is compared to the threshold, ABOVE or BELOW
+	 */
+	public int getComparison() {
+		return comparison;
+	}
+
+	/**
+	 * @return the threshold
+	 */
+	public float getThreshold() {
+		return threshold;
+	}
+
+	/**
+	 * @return the time in milliseconds that the condition must be met for before the rule is raised
+	 */
+	public long getDuration() {
+		return duration;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return name;
+	}
+}
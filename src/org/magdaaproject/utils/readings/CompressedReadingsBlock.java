@@ -0,0 +1,567 @@
+/*
+ * Copyright (C) 2013 The MaGDAA Project
+ *
+ * This file is part of the MaGDAA Library Software
+ *
+ * MaGDAA Library Software is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This source code is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this source code; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.magdaaproject.utils.readings;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * a block of sensor readings of the same type compressed using the time series encoding
+ * described in the paper "Gorilla: A Fast, Scalable, In-Memory Time Series Database"
+ *
+ * timestamps are stored as the difference between consecutive deltas, and each field is
+ * stored as the XOR of its value with the value of the same field in the previous reading.
+ * regular readings with slowly changing values therefore take only a few bits each.
+ * readings can be appended to the block at any time, and iterating over the block decodes
+ * one reading at a time
+ */
+public class CompressedReadingsBlock implements Iterable<SensorReading> {
+
+	/*
+	 * private class level constants
+	 */
+	private static final int INITIAL_WORDS = 16;
+
+	private static final int TEMP_HUMIDITY_FIELDS = 2;
+	private static final int WEATHER_FIELDS = 9;
+
+	/*
+	 * private class level variables
+	 */
+	private int recordType;
+	private int fieldCount;
+
+	private long[] words = new long[INITIAL_WORDS];
+	private int bitLength = 0;
+	private int count = 0;
+
+	// state of the encoder, used when appending
+	private long lastTimestamp;
+	private long lastDelta;
+	private int[] lastValues;
+	private int[] lastLeading;
+	private int[] lastTrailing;
+	private int[] scratch;
+
+	/**
+	 * construct a new empty block
+	 *
+	 * @param recordType the type of reading stored in the block, one of the type constants defined in the ReadingsBinaryFormat class
+	 * @throws IllegalArgumentException if the record type is invalid
+	 */
+	public CompressedReadingsBlock(int recordType) {
+
+		switch(recordType) {
+		case ReadingsBinaryFormat.TYPE_TEMP_HUMIDITY:
+			fieldCount = TEMP_HUMIDITY_FIELDS;
+			break;
+		case ReadingsBinaryFormat.TYPE_WEATHER:
+			fieldCount = WEATHER_FIELDS;
+			break;
+		default:
+			throw new IllegalArgumentException("the record type is invalid");
+		}
+
+		this.recordType = recordType;
+
+		lastValues = new int[fieldCount];
+		lastLeading = new int[fieldCount];
+		lastTrailing = new int[fieldCount];
+		scratch = new int[fieldCount];
+	}
+
+	/**
+	 * append a reading to the end of the block
+	 *
+	 * @param reading the reading to append
+	 * @throws IllegalArgumentException if the reading is not of the type stored in the block
+	 */
+	public void append(SensorReading reading) {
+
+		if(ReadingsBinaryFormat.getRecordType(reading) != recordType) {
+			throw new IllegalArgumentException("the reading type does not match the block type");
+		}
+
+		getFieldBits(reading, scratch);
+
+		long mTimestamp = reading.getTimestamp();
+
+		if(count == 0) {
+			// the first reading is stored in full
+			writeBits(mTimestamp, 64);
+
+			for(int i = 0; i < fieldCount; i++) {
+				writeBits(scratch[i], 32);
+				lastLeading[i] = -1;
+			}
+
+			lastDelta = 0;
+		} else {
+			long mDelta = mTimestamp - lastTimestamp;
+			writeDeltaOfDelta(mDelta - lastDelta);
+			lastDelta = mDelta;
+
+			for(int i = 0; i < fieldCount; i++) {
+				writeXor(i, scratch[i] ^ lastValues[i]);
+			}
+		}
+
+		lastTimestamp = mTimestamp;
+		System.arraycopy(scratch, 0, lastValues, 0, fieldCount);
+		count++;
+	}
+
+	/**
+	 * append all of the readings in a list to the end of the block
+	 *
+	 * @param readings the list of readings
+	 * @throws IllegalArgumentException if a reading is not of the type stored in the block
+	 */
+	public void append(ReadingsList readings) {
+		for(int i = 0; i < readings.size(); i++) {
+			append(readings.get(i));
+		}
+	}
+
+	/**
+	 * @return the type of reading stored in the block, one of the type constants defined in the ReadingsBinaryFormat class
+	 */
+	public int getRecordType() {
+		return recordType;
+	}
+
+	/**
+	 * @return the number of readings in the block
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * @return the number of bytes used by the compressed readings
+	 */
+	public int getCompressedSize() {
+		return (bitLength + 7) >>> 3;
+	}
+
+	/**
+	 * @return the timestamp of the most recent reading appended to the block
+	 * @throws NoSuchElementException if the block is empty
+	 */
+	public long getLastTimestamp() {
+		if(count == 0) {
+			throw new NoSuchElementException();
+		}
+
+		return lastTimestamp;
+	}
+
+	/**
+	 * decode all of the readings in the block, adding them to a list
+	 *
+	 * @param readings the list to add the readings to
+	 */
+	public void decode(ReadingsList readings) {
+		Iterator<SensorReading> mIterator = iterator();
+
+		while(mIterator.hasNext()) {
+			readings.add(mIterator.next());
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Iterable#iterator()
+	 */
+	public Iterator<SensorReading> iterator() {
+		return new BlockIterator();
+	}
+
+	/**
+	 * serialise the block into a byte array, consisting of the record type, the number of
+	 * readings, the number of bits and the compressed readings
+	 *
+	 * @return the serialised block
+	 */
+	public byte[] toByteArray() {
+
+		int mLength = getCompressedSize();
+		ByteBuffer mBuffer = ByteBuffer.allocate(9 + mLength);
+
+		mBuffer.put((byte) recordType);
+		mBuffer.putInt(count);
+		mBuffer.putInt(bitLength);
+
+		for(int i = 0; i < mLength; i++) {
+			mBuffer.put((byte) (words[i >>> 3] >>> (56 - ((i & 7) << 3))));
+		}
+
+		return mBuffer.array();
+	}
+
+	/**
+	 * rebuild a block from a byte array created by the {@link #toByteArray() toByteArray} method,
+	 * more readings can be appended to the rebuilt block
+	 *
+	 * @param bytes the serialised block
+	 * @return the rebuilt block
+	 * @throws IOException if the serialised block is invalid
+	 */
+	public static CompressedReadingsBlock fromByteArray(byte[] bytes) throws IOException {
+
+		ByteBuffer mBuffer = ByteBuffer.wrap(bytes);
+		CompressedReadingsBlock mBlock;
+
+		try {
+			int mRecordType = mBuffer.get() & 0xff;
+			if(mRecordType != ReadingsBinaryFormat.TYPE_TEMP_HUMIDITY && mRecordType != ReadingsBinaryFormat.TYPE_WEATHER) {
+				throw new IOException("unsupported record type '" + mRecordType + "'");
+			}
+
+			mBlock = new CompressedReadingsBlock(mRecordType);
+
+			int mCount = mBuffer.getInt();
+			int mBitLength = mBuffer.getInt();
+
+			if(mCount < 0 || mBitLength < 0 || mBuffer.remaining() != (mBitLength + 7) >>> 3) {
+				throw new IOException("the block length is invalid");
+			}
+
+			mBlock.ensureCapacity(mBitLength);
+
+			for(int i = 0; mBuffer.hasRemaining(); i++) {
+				mBlock.words[i >>> 3] |= (mBuffer.get() & 0xffL) << (56 - ((i & 7) << 3));
+			}
+
+			mBlock.bitLength = mBitLength;
+			mBlock.count = mCount;
+		} catch (BufferUnderflowException e) {
+			throw new IOException("the block is truncated", e);
+		}
+
+		// replay the readings to restore the state of the encoder
+		BlockIterator mIterator = mBlock.new BlockIterator();
+
+		try {
+			while(mIterator.hasNext()) {
+				mIterator.advance();
+			}
+		} catch (IndexOutOfBoundsException e) {
+			throw new IOException("the block is truncated", e);
+		}
+
+		mIterator.restoreEncoderState();
+
+		return mBlock;
+	}
+
+	/*
+	 * store the fields of a reading as 32 bit values
+	 */
+	private void getFieldBits(SensorReading reading, int[] values) {
+
+		if(recordType == ReadingsBinaryFormat.TYPE_TEMP_HUMIDITY) {
+			TempHumidityReading mReading = (TempHumidityReading) reading;
+
+			values[0] = Float.floatToRawIntBits(mReading.getTemp());
+			values[1] = Float.floatToRawIntBits(mReading.getHumidity());
+		} else {
+			WeatherReading mReading = (WeatherReading) reading;
+
+			values[0] = mReading.getBarometricTrend();
+			values[1] = Float.floatToRawIntBits(mReading.getBarometer());
+			values[2] = Float.floatToRawIntBits(mReading.getTemperature());
+			values[3] = mReading.getHumidity();
+			values[4] = Float.floatToRawIntBits(mReading.getWindSpeed());
+			values[5] = Float.floatToRawIntBits(mReading.getAverageWindSpeed());
+			values[6] = mReading.getWindDirection();
+			values[7] = Float.floatToRawIntBits(mReading.getRainRate());
+			values[8] = Float.floatToRawIntBits(mReading.getRainToday());
+		}
+	}
+
+	/*
+	 * build a reading from its fields stored as 32 bit values
+	 */
+	private SensorReading buildReading(long timestamp, int[] values) {
+
+		if(recordType == ReadingsBinaryFormat.TYPE_TEMP_HUMIDITY) {
+			return new TempHumidityReading(
+					timestamp,
+					Float.intBitsToFloat(values[0]),
+					Float.intBitsToFloat(values[1]));
+		} else {
+			WeatherReading mReading = new WeatherReading(timestamp);
+
+			mReading.setBarometricTrend(values[0]);
+			mReading.setBarometer(Float.intBitsToFloat(values[1]));
+			mReading.setTemperature(Float.intBitsToFloat(values[2]));
+			mReading.setHumidity(values[3]);
+			mReading.setWindSpeed(Float.intBitsToFloat(values[4]));
+			mReading.setAverageWindSpeed(Float.intBitsToFloat(values[5]));
+			mReading.setWindDirection(values[6]);
+			mReading.setRainRate(Float.intBitsToFloat(values[7]));
+			mReading.setRainToday(Float.intBitsToFloat(values[8]));
+
+			return mReading;
+		}
+	}
+
+	/*
+	 * write the difference between two consecutive timestamp deltas using a variable
+	 * length prefix code
+	 */
+	private void writeDeltaOfDelta(long deltaOfDelta) {
+
+		if(deltaOfDelta == 0) {
+			writeBits(0, 1);
+		} else if(deltaOfDelta >= -64 && deltaOfDelta <= 63) {
+			writeBits(0x2, 2);
+			writeBits(deltaOfDelta, 7);
+		} else if(deltaOfDelta >= -256 && deltaOfDelta <= 255) {
+			writeBits(0x6, 3);
+			writeBits(deltaOfDelta, 9);
+		} else if(deltaOfDelta >= -2048 && deltaOfDelta <= 2047) {
+			writeBits(0xE, 4);
+			writeBits(deltaOfDelta, 12);
+		} else if(deltaOfDelta >= Integer.MIN_VALUE && deltaOfDelta <= Integer.MAX_VALUE) {
+			writeBits(0x1E, 5);
+			writeBits(deltaOfDelta, 32);
+		} else {
+			writeBits(0x1F, 5);
+			writeBits(deltaOfDelta, 64);
+		}
+	}
+
+	/*
+	 * write the XOR of a field with its previous value, reusing the previous window of
+	 * meaningful bits if the new value fits inside it
+	 */
+	private void writeXor(int field, int xor) {
+
+		if(xor == 0) {
+			writeBits(0, 1);
+			return;
+		}
+
+		int mLeading = Integer.numberOfLeadingZeros(xor);
+		int mTrailing = Integer.numberOfTrailingZeros(xor);
+
+		if(lastLeading[field] != -1 && mLeading >= lastLeading[field] && mTrailing >= lastTrailing[field]) {
+			// reuse the previous window
+			writeBits(0x2, 2);
+			writeBits((xor & 0xffffffffL) >>> lastTrailing[field], 32 - lastLeading[field] - lastTrailing[field]);
+		} else {
+			// describe a new window
+			int mLength = 32 - mLeading - mTrailing;
+
+			writeBits(0x3, 2);
+			writeBits(mLeading, 5);
+			writeBits(mLength - 1, 5);
+			writeBits((xor & 0xffffffffL) >>> mTrailing, mLength);
+
+			lastLeading[field] = mLeading;
+			lastTrailing[field] = mTrailing;
+		}
+	}
+
+	/*
+	 * append the low order bits of a value to the bit stream, most significant bit first
+	 */
+	private void writeBits(long value, int bits) {
+
+		ensureCapacity(bitLength + bits);
+
+		if(bits < 64) {
+			value &= (1L << bits) - 1;
+		}
+
+		int mWord = bitLength >>> 6;
+		int mFree = 64 - (bitLength & 63);
+
+		if(bits <= mFree) {
+			words[mWord] |= value << (mFree - bits);
+		} else {
+			int mRest = bits - mFree;
+
+			words[mWord] |= value >>> mRest;
+			words[mWord + 1] |= value << (64 - mRest);
+		}
+
+		bitLength += bits;
+	}
+
+	/*
+	 * read a number of bits from the bit stream starting at the specified position
+	 */
+	private long readBits(int position, int bits) {
+
+		if(position + bits > bitLength) {
+			throw new IndexOutOfBoundsException("read past the end of the block");
+		}
+
+		int mWord = position >>> 6;
+		int mFree = 64 - (position & 63);
+		long mValue;
+
+		if(bits <= mFree) {
+			mValue = words[mWord] >>> (mFree - bits);
+		} else {
+			int mRest = bits - mFree;
+
+			mValue = (words[mWord] << mRest) | (words[mWord + 1] >>> (64 - mRest));
+		}
+
+		if(bits < 64) {
+			mValue &= (1L << bits) - 1;
+		}
+
+		return mValue;
+	}
+
+	/*
+	 * make sure there is room for the specified number of bits
+	 */
+	private void ensureCapacity(int bits) {
+
+		int mWords = (bits + 63) >>> 6;
+
+		if(mWords > words.length) {
+			words = Arrays.copyOf(words, Math.max(mWords, words.length * 2));
+		}
+	}
+
+	/*
+	 * an iterator which decodes one reading at a time
+	 */
+	private class BlockIterator implements Iterator<SensorReading> {
+
+		private int position = 0;
+		private int index = 0;
+
+		private long timestamp;
+		private long delta = 0;
+		private int[] values = new int[fieldCount];
+		private int[] leading = new int[fieldCount];
+		private int[] trailing = new int[fieldCount];
+
+		public boolean hasNext() {
+			return index < count;
+		}
+
+		public SensorReading next() {
+
+			if(hasNext() == false) {
+				throw new NoSuchElementException();
+			}
+
+			advance();
+
+			return buildReading(timestamp, values);
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		/*
+		 * decode the next timestamp and set of values
+		 */
+		private void advance() {
+
+			if(index == 0) {
+				timestamp = read(64);
+
+				for(int i = 0; i < fieldCount; i++) {
+					values[i] = (int) read(32);
+					leading[i] = -1;
+				}
+			} else {
+				delta += readDeltaOfDelta();
+				timestamp += delta;
+
+				for(int i = 0; i < fieldCount; i++) {
+					values[i] ^= readXor(i);
+				}
+			}
+
+			index++;
+		}
+
+		/*
+		 * copy the decoder state into the encoder so more readings can be appended
+		 */
+		private void restoreEncoderState() {
+			lastTimestamp = timestamp;
+			lastDelta = delta;
+			System.arraycopy(values, 0, lastValues, 0, fieldCount);
+			System.arraycopy(leading, 0, lastLeading, 0, fieldCount);
+			System.arraycopy(trailing, 0, lastTrailing, 0, fieldCount);
+		}
+
+		private long readDeltaOfDelta() {
+
+			if(read(1) == 0) {
+				return 0;
+			} else if(read(1) == 0) {
+				return signExtend(read(7), 7);
+			} else if(read(1) == 0) {
+				return signExtend(read(9), 9);
+			} else if(read(1) == 0) {
+				return signExtend(read(12), 12);
+			} else if(read(1) == 0) {
+				return signExtend(read(32), 32);
+			} else {
+				return read(64);
+			}
+		}
+
+		private int readXor(int field) {
+
+			if(read(1) == 0) {
+				return 0;
+			}
+
+			if(read(1) == 1) {
+				// a new window of meaningful bits
+				leading[field] = (int) read(5);
+				trailing[field] = 32 - leading[field] - ((int) read(5) + 1);
+			}
+
+			int mLength = 32 - leading[field] - trailing[field];
+
+			return (int) (read(mLength) << trailing[field]);
+		}
+
+		private long read(int bits) {
+			long mValue = readBits(position, bits);
+			position += bits;
+			return mValue;
+		}
+
+		private long signExtend(long value, int bits) {
+			return (value << (64 - bits)) >> (64 - bits);
+		}
+	}
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) 2013 The MaGDAA Project
+ *
+ * This file is part of the MaGDAA Library Software
+ *
+ * MaGDAA Library Software is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This source code is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this source code; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.magdaaproject.utils.readings;
+
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * a bounded list of sensor readings that can be added to by one producer thread, such as
+ * the thread reading from a serial port, while any number of other threads read from it
+ *
+ * like a ReadingsList, once the limit is reached adding a reading evicts the oldest
+ * reading. adding a reading never blocks or takes a lock. readers take a snapshot of the
+ * readings in the list which can be iterated without copying the readings. the ring
+ * buffer holds twice as many slots as the limit so that the producer can add up to
+ * limit more readings before the slots used by a snapshot are reused, if the producer
+ * does catch up with a snapshot it fails with a ConcurrentModificationException
+ */
+public class ConcurrentReadingsList {
+
+	/*
+	 * private class level variables
+	 */
+	private int limit;
+	private int mask;
+	private AtomicReferenceArray<SensorReading> items;
+
+	// the total number of readings ever added, and the sequence number of the oldest live reading
+	private AtomicLong published = new AtomicLong(0);
+	private AtomicLong start = new AtomicLong(0);
+
+	/**
+	 * construct a new list with the default item limit of a ReadingsList
+	 */
+	public ConcurrentReadingsList() {
+		this(ReadingsList.DEFAULT_LIMIT);
+	}
+
+	/**
+	 * construct a new list with the specified item limit
+	 *
+	 * @param limit the maximum number of readings in the list
+	 * @throws IllegalArgumentException if the limit is less than one or too large
+	 */
+	public ConcurrentReadingsList(int limit) {
+
+		if(limit < 1 || limit > (1 << 29)) {
+			throw new IllegalArgumentException("the limit must be between 1 and " + (1 << 29));
+		}
+
+		// use a power of two capacity of at least twice the limit
+		int mCapacity = Integer.highestOneBit(limit) << 1;
+		if(mCapacity < limit * 2) {
+			mCapacity <<= 1;
+		}
+
+		this.limit = limit;
+		this.mask = mCapacity - 1;
+		this.items = new AtomicReferenceArray<SensorReading>(mCapacity);
+	}
+
+	/**
+	 * add a reading to the list, evicting the oldest reading if the list is full. this
+	 * method must only ever be called by a single producer thread
+	 *
+	 * @param reading the reading to add
+	 */
+	public void add(SensorReading reading) {
+
+		long mSequence = published.get();
+
+		items.set((int) (mSequence & mask), reading);
+
+		// make the reading visible to readers
+		published.set(mSequence + 1);
+	}
+
+	/**
+	 * remove readings older than the minimum age, this method must only ever be called
+	 * by the producer thread and requires that readings are added in timestamp order
+	 *
+	 * @param minAge the minimum age for readings to remain in the list
+	 */
+	public void removeOld(long minAge) {
+
+		long mEnd = published.get();
+		long mStart = getFirstSequence(mEnd);
+
+		while(mStart < mEnd && items.get((int) (mStart & mask)).getTimestamp() < minAge) {
+			mStart++;
+		}
+
+		start.set(mStart);
+	}
+
+	/**
+	 * @return the number of readings currently in the list
+	 */
+	public int size() {
+		long mEnd = published.get();
+		return (int) (mEnd - getFirstSequence(mEnd));
+	}
+
+	/**
+	 * @return the maximum number of readings in the list
+	 */
+	public int getLimit() {
+		return limit;
+	}
+
+	/**
+	 * @return the most recently added reading, or null if the list is empty
+	 */
+	public SensorReading getLast() {
+		long mEnd = published.get();
+
+		if(mEnd == getFirstSequence(mEnd)) {
+			return null;
+		}
+
+		return items.get((int) ((mEnd - 1) & mask));
+	}
+
+	/**
+	 * take a snapshot of the readings currently in the list
+	 *
+	 * @return a snapshot of the readings in the list
+	 */
+	public Snapshot snapshot() {
+		long mEnd = published.get();
+		return new Snapshot(getFirstSequence(mEnd), mEnd);
+	}
+
+	/*
+	 * determine the sequence number of the oldest live reading
+	 */
+	private long getFirstSequence(long end) {
+		return Math.max(start.get(), end - limit);
+	}
+
+	/**
+	 * a consistent view of the readings that were in the list when the snapshot was taken
+	 */
+	public class Snapshot implements Iterable<SensorReading> {
+
+		private long first;
+		private long end;
+
+		private Snapshot(long first, long end) {
+			this.first = first;
+			this.end = end;
+		}
+
+		/**
+		 * @return the number of readings in the snapshot
+		 */
+		public int size() {
+			return (int) (end - first);
+		}
+
+		/**
+		 * get a reading from the snapshot
+		 *
+		 * @param index the index of the reading, with zero being the oldest reading
+		 * @return the reading
+		 * @throws ConcurrentModificationException if the reading has been overwritten by the producer
+		 */
+		public SensorReading get(int index) {
+
+			if(index < 0 || index >= size()) {
+				throw new IndexOutOfBoundsException("index: " + index + ", size: " + size());
+			}
+
+			long mSequence = first + index;
+			SensorReading mReading = items.get((int) (mSequence & mask));
+
+			// make sure the slot was not reused before it was read
+			if(published.get() - mSequence > mask) {
+				throw new ConcurrentModificationException("the snapshot has been overwritten");
+			}
+
+			return mReading;
+		}
+
+		/**
+		 * copy the readings in the snapshot into a list
+		 *
+		 * @param readings the list to add the readings to
+		 */
+		public void copyTo(ReadingsList readings) {
+			for(int i = 0; i < size(); i++) {
+				readings.add(get(i));
+			}
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see java.lang.Iterable#iterator()
+		 */
+		public Iterator<SensorReading> iterator() {
+			return new Iterator<SensorReading>() {
+
+				private int index = 0;
+
+				public boolean hasNext() {
+					return index < size();
+				}
+
+				public SensorReading next() {
+					if(hasNext() == false) {
+						throw new NoSuchElementException();
+					}
+
+					return get(index++);
+				}
+
+				public void remove() {
+					throw new UnsupportedOperationException();
+				}
+			};
+		}
+	}
+}
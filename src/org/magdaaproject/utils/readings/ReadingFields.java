@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2013 The MaGDAA Project
+ *
+ * This file is part of the MaGDAA Library Software
+ *
+ * MaGDAA Library Software is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This source code is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this source code; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.magdaaproject.utils.readings;
+
+/**
+ * a utility class which exposes the numeric fields of the different types of sensor
+ * reading using a common set of field constants
+ *
+ * the temperature and humidity fields are shared by temperature and humidity readings
+ * and weather readings, all of the other fields are only available in weather readings
+ */
+public class ReadingFields {
+
+	/**
+	 * constant to identify the temperature field
+	 */
+	public static final int TEMPERATURE = 0;
+
+	/**
+	 * constant to identify the relative humidity field
+	 */
+	public static final int HUMIDITY = 1;
+
+	/**
+	 * constant to identify the barometer field
+	 */
+	public static final int BAROMETER = 2;
+
+	/**
+	 * constant to identify the barometric trend field
+	 */
+	public static final int BAROMETRIC_TREND = 3;
+
+	/**
+	 * constant to identify the wind speed field
+	 */
+	public static final int WIND_SPEED = 4;
+
+	/**
+	 * constant to identify the average wind speed field
+	 */
+	public static final int AVERAGE_WIND_SPEED = 5;
+
+	/**
+	 * constant to identify the wind direction field
+	 */
+	public static final int WIND_DIRECTION = 6;
+
+	/**
+	 * constant to identify the rain rate field
+	 */
+	public static final int RAIN_RATE = 7;
+
+	/**
+	 * constant to identify the rain today field
+	 */
+	public static final int RAIN_TODAY = 8;
+
+	/**
+	 * the number of field constants defined by this class
+	 */
+	public static final int FIELD_COUNT = 9;
+
+	/**
+	 * determine if a reading contains a field
+	 *
+	 * @param reading the reading to check
+	 * @param field the field, one of the field constants defined by this class
+	 * @return true if the reading contains the field
+	 * @throws IllegalArgumentException if the field is invalid
+	 */
+	public static boolean hasField(SensorReading reading, int field) {
+
+		checkField(field);
+
+		if(reading instanceof WeatherReading) {
+			return true;
+		} else if(reading instanceof TempHumidityReading) {
+			return field == TEMPERATURE || field == HUMIDITY;
+		} else {
+			return false;
+		}
+	}
+
+	/**
+	 * get the value of a field from a reading
+	 *
+	 * @param reading the reading
+	 * @param field the field, one of the field constants defined by this class
+	 * @return the value of the field
+	 * @throws IllegalArgumentException if the field is invalid or the reading does not contain the field
+	 */
+	public static float getValue(SensorReading reading, int field) {
+
+		if(reading instanceof WeatherReading) {
+			return getValue((WeatherReading) reading, field);
+		} else if(reading instanceof TempHumidityReading) {
+			TempHumidityReading mReading = (TempHumidityReading) reading;
+
+			switch(field) {
+			case TEMPERATURE:
+				return mReading.getTemp();
+			case HUMIDITY:
+				return mReading.getHumidity();
+			}
+		}
+
+		checkField(field);
+		throw new IllegalArgumentException("the reading does not contain the field");
+	}
+
+	/**
+	 * get the value of a field from a weather reading
+	 *
+	 * @param reading the reading
+	 * @param field the field, one of the field constants defined by this class
+	 * @return the value of the field
+	 * @throws IllegalArgumentException if the field is invalid
+	 */
+	public static float getValue(WeatherReading reading, int field) {
+		switch(field) {
+		case TEMPERATURE:
+			return reading.getTemperature();
+		case HUMIDITY:
+			return reading.getHumidity();
+		case BAROMETER:
+			return reading.getBarometer();
+		case BAROMETRIC_TREND:
+			return reading.getBarometricTrend();
+		case WIND_SPEED:
+			return reading.getWindSpeed();
+		case AVERAGE_WIND_SPEED:
+			return reading.getAverageWindSpeed();
+		case WIND_DIRECTION:
+			return reading.getWindDirection();
+		case RAIN_RATE:
+			return reading.getRainRate();
+		case RAIN_TODAY:
+			return reading.getRainToday();
+		default:
+			throw new IllegalArgumentException("the field is invalid");
+		}
+	}
+
+	/*
+	 * check that the field is one of the constants defined by this class
+	 */
+	private static void checkField(int field) {
+		if(field < 0 || field >= FIELD_COUNT) {
+			throw new IllegalArgumentException("the field is invalid");
+		}
+	}
+}
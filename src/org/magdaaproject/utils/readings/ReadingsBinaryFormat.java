@@ -0,0 +1,547 @@
+/*
+ * Copyright (C) 2013 The MaGDAA Project
+ *
+ * This file is part of the MaGDAA Library Software
+ *
+ * MaGDAA Library Software is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This source code is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this source code; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.magdaaproject.utils.readings;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * a utility class which reads and writes sensor readings using a compact fixed width
+ * binary format
+ *
+ * a temperature and humidity reading uses 16 bytes and a weather reading uses 36 bytes.
+ * a list of readings is encoded as a sequence of blocks, each block starts with a header
+ * identifying the format version, the type of record and the number of records in the
+ * block followed by the records themselves. all values are big endian
+ *
+ * the records in a block share a station identifier. a block of readings from the local
+ * station uses a version 1 header, so it can still be read by older versions of this class,
+ * and a block of readings from any other station uses a version 2 header which adds the
+ * station identifier after the number of records
+ */
+public class ReadingsBinaryFormat {
+
+	/*
+	 * public class level constants
+	 */
+
+	/**
+	 * the latest version of the binary format written by this class
+	 */
+	public static final int VERSION = 2;
+
+	/**
+	 * the magic number at the start of each block of records, the ASCII characters MGDR
+	 */
+	public static final int MAGIC = 0x4D474452;
+
+	/**
+	 * the size of a version 1 block header in bytes
+	 */
+	public static final int HEADER_SIZE = 10;
+
+	/**
+	 * the size of a version 2 block header in bytes, which adds the station identifier
+	 */
+	public static final int STATION_HEADER_SIZE = HEADER_SIZE + 8;
+
+	/**
+	 * record type for a temperature and humidity reading
+	 */
+	public static final int TYPE_TEMP_HUMIDITY = 1;
+
+	/**
+	 * record type for a weather reading
+	 */
+	public static final int TYPE_WEATHER = 2;
+
+	/**
+	 * the size of a temperature and humidity record in bytes
+	 */
+	public static final int TEMP_HUMIDITY_RECORD_SIZE = 16;
+
+	/**
+	 * the size of a weather record in bytes
+	 */
+	public static final int WEATHER_RECORD_SIZE = 36;
+
+	/*
+	 * private class level constants
+	 */
+	private static final int RECORDS_PER_CHUNK = 128;
+
+	private static final int VERSION_1 = 1;
+
+	/**
+	 * get the record type used to store a reading
+	 *
+	 * @param reading the reading
+	 * @return the record type, one of the type constants defined by this class
+	 * @throws IllegalArgumentException if the reading cannot be stored in the binary format
+	 */
+	public static int getRecordType(SensorReading reading) {
+
+		if(reading instanceof TempHumidityReading) {
+			return TYPE_TEMP_HUMIDITY;
+		} else if(reading instanceof WeatherReading) {
+			return TYPE_WEATHER;
+		} else {
+			throw new IllegalArgumentException("unsupported reading type '" + reading.getClass().getName() + "'");
+		}
+	}
+
+	/**
+	 * get the size of a record
+	 *
+	 * @param recordType the record type, one of the type constants defined by this class
+	 * @return the size of the record in bytes
+	 * @throws IllegalArgumentException if the record type is invalid
+	 */
+	public static int getRecordSize(int recordType) {
+		switch(recordType) {
+		case TYPE_TEMP_HUMIDITY:
+			return TEMP_HUMIDITY_RECORD_SIZE;
+		case TYPE_WEATHER:
+			return WEATHER_RECORD_SIZE;
+		default:
+			throw new IllegalArgumentException("the record type is invalid");
+		}
+	}
+
+	/**
+	 * write a temperature and humidity reading at the current position of the buffer
+	 *
+	 * @param buffer the buffer to write to
+	 * @param reading the reading to write
+	 */
+	public static void writeTempHumidityReading(ByteBuffer buffer, TempHumidityReading reading) {
+		buffer.putLong(reading.getTimestamp());
+		buffer.putFloat(reading.getTemp());
+		buffer.putFloat(reading.getHumidity());
+	}
+
+	/**
+	 * read a temperature and humidity reading from the current position of the buffer
+	 *
+	 * @param buffer the buffer to read from
+	 * @return the new reading
+	 */
+	public static TempHumidityReading readTempHumidityReading(ByteBuffer buffer) {
+		long mTimestamp = buffer.getLong();
+		float mTemp = buffer.getFloat();
+		float mHumidity = buffer.getFloat();
+
+		return new TempHumidityReading(mTimestamp, mTemp, mHumidity);
+	}
+
+	/**
+	 * write a weather reading at the current position of the buffer
+	 *
+	 * @param buffer the buffer to write to
+	 * @param reading the reading to write
+	 */
+	public static void writeWeatherReading(ByteBuffer buffer, WeatherReading reading) {
+		buffer.putLong(reading.getTimestamp());
+		buffer.put((byte) reading.getBarometricTrend());
+		buffer.put((byte) reading.getHumidity());
+		buffer.putShort((short) reading.getWindDirection());
+		buffer.putFloat(reading.getBarometer());
+		buffer.putFloat(reading.getTemperature());
+		buffer.putFloat(reading.getWindSpeed());
+		buffer.putFloat(reading.getAverageWindSpeed());
+		buffer.putFloat(reading.getRainRate());
+		buffer.putFloat(reading.getRainToday());
+	}
+
+	/**
+	 * read a weather reading from the current position of the buffer
+	 *
+	 * @param buffer the buffer to read from
+	 * @return the new reading
+	 */
+	public static WeatherReading readWeatherReading(ByteBuffer buffer) {
+		return readWeatherReading(buffer, new WeatherReading(0));
+	}
+
+	/**
+	 * read a weather reading from the current position of the buffer into an existing reading
+	 *
+	 * @param buffer the buffer to read from
+	 * @param reading the reading to populate
+	 * @return the populated reading
+	 */
+	public static WeatherReading readWeatherReading(ByteBuffer buffer, WeatherReading reading) {
+		reading.setTimestamp(buffer.getLong());
+		reading.setBarometricTrend(buffer.get());
+		reading.setHumidity(buffer.get() & 0xff);
+		reading.setWindDirection(buffer.getShort());
+		reading.setBarometer(buffer.getFloat());
+		reading.setTemperature(buffer.getFloat());
+		reading.setWindSpeed(buffer.getFloat());
+		reading.setAverageWindSpeed(buffer.getFloat());
+		reading.setRainRate(buffer.getFloat());
+		reading.setRainToday(buffer.getFloat());
+
+		return reading;
+	}
+
+	/**
+	 * write a reading at the current position of the buffer, without a block header
+	 *
+	 * @param buffer the buffer to write to
+	 * @param reading the reading to write
+	 * @throws IllegalArgumentException if the reading cannot be stored in the binary format
+	 */
+	public static void write(ByteBuffer buffer, SensorReading reading) {
+		if(reading instanceof TempHumidityReading) {
+			writeTempHumidityReading(buffer, (TempHumidityReading) reading);
+		} else if(reading instanceof WeatherReading) {
+			writeWeatherReading(buffer, (WeatherReading) reading);
+		} else {
+			throw new IllegalArgumentException("unsupported reading type '" + reading.getClass().getName() + "'");
+		}
+	}
+
+	/**
+	 * read a reading of the specified type from the current position of the buffer
+	 *
+	 * @param buffer the buffer to read from
+	 * @param recordType the record type, one of the type constants defined by this class
+	 * @return the new reading
+	 * @throws IllegalArgumentException if the record type is invalid
+	 */
+	public static SensorReading read(ByteBuffer buffer, int recordType) {
+		switch(recordType) {
+		case TYPE_TEMP_HUMIDITY:
+			return readTempHumidityReading(buffer);
+		case TYPE_WEATHER:
+			return readWeatherReading(buffer);
+		default:
+			throw new IllegalArgumentException("the record type is invalid");
+		}
+	}
+
+	/**
+	 * determine the number of bytes needed to encode a list of readings
+	 *
+	 * @param readings the list of readings
+	 * @return the size of the encoded list in bytes
+	 */
+	public static int getEncodedSize(ReadingsList readings) {
+
+		int mSize = 0;
+		int mIndex = 0;
+		int mRunLength;
+
+		while(mIndex < readings.size()) {
+			mRunLength = getRunLength(readings, mIndex);
+			mSize += getHeaderSize(readings.get(mIndex).getStationId()) + mRunLength * getRecordSize(getRecordType(readings.get(mIndex)));
+			mIndex += mRunLength;
+		}
+
+		return mSize;
+	}
+
+	/**
+	 * encode a list of readings into a byte array
+	 *
+	 * @param readings the list of readings to encode
+	 * @return the encoded readings
+	 * @throws IllegalArgumentException if a reading cannot be stored in the binary format
+	 */
+	public static byte[] encode(ReadingsList readings) {
+
+		ByteBuffer mBuffer = ByteBuffer.allocate(getEncodedSize(readings));
+
+		int mIndex = 0;
+		int mRunLength;
+
+		while(mIndex < readings.size()) {
+			mRunLength = getRunLength(readings, mIndex);
+
+			writeHeader(mBuffer, readings.get(mIndex), mRunLength);
+
+			for(int i = mIndex; i < mIndex + mRunLength; i++) {
+				write(mBuffer, readings.get(i));
+			}
+
+			mIndex += mRunLength;
+		}
+
+		return mBuffer.array();
+	}
+
+	/**
+	 * encode a list of readings to an output stream, the stream is not closed
+	 *
+	 * @param readings the list of readings to encode
+	 * @param output the stream to write the encoded readings to
+	 * @throws IOException if something bad happens
+	 * @throws IllegalArgumentException if a reading cannot be stored in the binary format
+	 */
+	public static void encode(ReadingsList readings, OutputStream output) throws IOException {
+
+		// a chunk large enough for a batch of the largest records
+		ByteBuffer mBuffer = ByteBuffer.allocate(RECORDS_PER_CHUNK * WEATHER_RECORD_SIZE);
+
+		int mIndex = 0;
+		int mRunLength;
+		int mRecordSize;
+
+		while(mIndex < readings.size()) {
+			mRunLength = getRunLength(readings, mIndex);
+			mRecordSize = getRecordSize(getRecordType(readings.get(mIndex)));
+
+			if(mBuffer.remaining() < STATION_HEADER_SIZE) {
+				output.write(mBuffer.array(), 0, mBuffer.position());
+				mBuffer.clear();
+			}
+
+			writeHeader(mBuffer, readings.get(mIndex), mRunLength);
+
+			for(int i = mIndex; i < mIndex + mRunLength; i++) {
+
+				// write out the chunk when it is full
+				if(mBuffer.remaining() < mRecordSize) {
+					output.write(mBuffer.array(), 0, mBuffer.position());
+					mBuffer.clear();
+				}
+
+				write(mBuffer, readings.get(i));
+			}
+
+			mIndex += mRunLength;
+		}
+
+		output.write(mBuffer.array(), 0, mBuffer.position());
+	}
+
+	/**
+	 * decode a byte array of encoded readings, adding the readings to a list
+	 *
+	 * @param bytes the encoded readings
+	 * @param readings the list to add the decoded readings to
+	 * @return the number of readings decoded
+	 * @throws IOException if the encoded readings are invalid
+	 */
+	public static int decode(byte[] bytes, ReadingsList readings) throws IOException {
+
+		ByteBuffer mBuffer = ByteBuffer.wrap(bytes);
+
+		int mCount = 0;
+		int mVersion;
+		int mRecordType;
+		int mRecordCount;
+		long mStationId;
+
+		try {
+			while(mBuffer.hasRemaining()) {
+				mVersion = readHeader(mBuffer);
+				mRecordType = readRecordType(mBuffer);
+				mRecordCount = mBuffer.getInt();
+				mStationId = mVersion == VERSION_1 ? SensorReading.LOCAL_STATION : mBuffer.getLong();
+
+				// a corrupt count is caught before any of the records are read
+				if(mRecordCount < 0 || mRecordCount > mBuffer.remaining() / getRecordSize(mRecordType)) {
+					throw new IOException("the block record count is invalid");
+				}
+
+				for(int i = 0; i < mRecordCount; i++) {
+					readings.add(readRecord(mBuffer, mRecordType, mStationId));
+				}
+
+				mCount += mRecordCount;
+			}
+		} catch (BufferUnderflowException e) {
+			throw new IOException("the encoded readings are truncated", e);
+		}
+
+		return mCount;
+	}
+
+	/**
+	 * decode encoded readings from an input stream until the end of the stream is reached,
+	 * adding the readings to a list. the stream is not closed
+	 *
+	 * @param input the input stream to read from
+	 * @param readings the list to add the decoded readings to
+	 * @return the number of readings decoded
+	 * @throws IOException if something bad happens or the encoded readings are invalid
+	 */
+	public static int decode(InputStream input, ReadingsList readings) throws IOException {
+
+		DataInputStream mInput = new DataInputStream(input);
+		ByteBuffer mBuffer = ByteBuffer.allocate(RECORDS_PER_CHUNK * WEATHER_RECORD_SIZE);
+
+		int mCount = 0;
+		int mVersion;
+		int mRecordType;
+		int mRecordSize;
+		int mRemaining;
+		long mStationId;
+		int mBatch;
+
+		while(true) {
+
+			// read the next block header, if there is one
+			mBuffer.clear();
+			try {
+				mInput.readFully(mBuffer.array(), 0, HEADER_SIZE);
+			} catch (EOFException e) {
+				break;
+			}
+
+			mVersion = readHeader(mBuffer);
+			mRecordType = readRecordType(mBuffer);
+			mRecordSize = getRecordSize(mRecordType);
+			mRemaining = mBuffer.getInt();
+
+			if(mRemaining < 0) {
+				throw new IOException("the block record count is invalid");
+			}
+
+			if(mVersion == VERSION_1) {
+				mStationId = SensorReading.LOCAL_STATION;
+			} else {
+				try {
+					mInput.readFully(mBuffer.array(), HEADER_SIZE, STATION_HEADER_SIZE - HEADER_SIZE);
+				} catch (EOFException e) {
+					throw new IOException("the encoded readings are truncated", e);
+				}
+
+				mStationId = mBuffer.getLong();
+			}
+
+			// read the records in chunks
+			while(mRemaining > 0) {
+				mBatch = Math.min(mRemaining, RECORDS_PER_CHUNK);
+
+				mBuffer.clear();
+				try {
+					mInput.readFully(mBuffer.array(), 0, mBatch * mRecordSize);
+				} catch (EOFException e) {
+					throw new IOException("the encoded readings are truncated", e);
+				}
+
+				for(int i = 0; i < mBatch; i++) {
+					readings.add(readRecord(mBuffer, mRecordType, mStationId));
+				}
+
+				mRemaining -= mBatch;
+				mCount += mBatch;
+			}
+		}
+
+		return mCount;
+	}
+
+	/*
+	 * get the size of the header of a block of readings from a station
+	 */
+	private static int getHeaderSize(long stationId) {
+		return stationId == SensorReading.LOCAL_STATION ? HEADER_SIZE : STATION_HEADER_SIZE;
+	}
+
+	/*
+	 * write the header of a block of readings of the same type and station as the reading
+	 */
+	private static void writeHeader(ByteBuffer buffer, SensorReading reading, int recordCount) {
+
+		long mStationId = reading.getStationId();
+
+		buffer.putInt(MAGIC);
+		buffer.put((byte) (mStationId == SensorReading.LOCAL_STATION ? VERSION_1 : VERSION));
+		buffer.put((byte) getRecordType(reading));
+		buffer.putInt(recordCount);
+
+		if(mStationId != SensorReading.LOCAL_STATION) {
+			buffer.putLong(mStationId);
+		}
+	}
+
+	/*
+	 * read and validate the magic number and version of a block header, returning the version
+	 */
+	private static int readHeader(ByteBuffer buffer) throws IOException {
+
+		if(buffer.getInt() != MAGIC) {
+			throw new IOException("missing block header");
+		}
+
+		int mVersion = buffer.get() & 0xff;
+		if(mVersion != VERSION_1 && mVersion != VERSION) {
+			throw new IOException("unsupported format version '" + mVersion + "'");
+		}
+
+		return mVersion;
+	}
+
+	/*
+	 * read and validate the record type of a block header
+	 */
+	private static int readRecordType(ByteBuffer buffer) throws IOException {
+
+		int mRecordType = buffer.get() & 0xff;
+		if(mRecordType != TYPE_TEMP_HUMIDITY && mRecordType != TYPE_WEATHER) {
+			throw new IOException("unsupported record type '" + mRecordType + "'");
+		}
+
+		return mRecordType;
+	}
+
+	/*
+	 * read a record while decoding, reporting a value that the reading rejects as invalid input
+	 */
+	private static SensorReading readRecord(ByteBuffer buffer, int recordType, long stationId) throws IOException {
+
+		SensorReading mReading;
+
+		try {
+			mReading = read(buffer, recordType);
+		} catch (IllegalArgumentException e) {
+			throw new IOException("the encoded reading is invalid", e);
+		}
+
+		mReading.setStationId(stationId);
+
+		return mReading;
+	}
+
+	/*
+	 * determine the number of consecutive readings of the same type and station starting at the index
+	 */
+	private static int getRunLength(ReadingsList readings, int index) {
+
+		int mRecordType = getRecordType(readings.get(index));
+		long mStationId = readings.get(index).getStationId();
+		int mEnd = index + 1;
+
+		while(mEnd < readings.size() && getRecordType(readings.get(mEnd)) == mRecordType && readings.get(mEnd).getStationId() == mStationId) {
+			mEnd++;
+		}
+
+		return mEnd - index;
+	}
+}
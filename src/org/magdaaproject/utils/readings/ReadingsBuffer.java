@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) 2013 The MaGDAA Project
+ *
+ * This file is part of the MaGDAA Library Software
+ *
+ * MaGDAA Library Software is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This source code is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this source code; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.magdaaproject.utils.readings;
+
+/**
+ * a fixed capacity buffer of single value sensor readings, such as the samples taken
+ * from one channel of an analogue to digital converter or one field of a stream of
+ * weather readings, with the same bounded add and evict behaviour as a ReadingsList
+ *
+ * the timestamps and values are held in parallel primitive arrays that are allocated
+ * when the buffer is created, so adding a reading never allocates memory. once the
+ * buffer is full the oldest reading is replaced by the newest reading
+ */
+public class ReadingsBuffer {
+
+	/*
+	 * private class level variables
+	 */
+	private long[] timestamps;
+	private float[] values;
+	private int limit;
+	private int head = 0;
+	private int size = 0;
+
+	/**
+	 * construct a new readings buffer with the default item limit of a ReadingsList
+	 */
+	public ReadingsBuffer() {
+		this(ReadingsList.DEFAULT_LIMIT);
+	}
+
+	/**
+	 * construct a new readings buffer with the specified item limit
+	 *
+	 * @param limit the maximum number of readings held in the buffer
+	 * @throws IllegalArgumentException if the limit is less than one
+	 */
+	public ReadingsBuffer(int limit) {
+
+		if(limit < 1) {
+			throw new IllegalArgumentException("the limit must be at least one");
+		}
+
+		this.limit = limit;
+		this.timestamps = new long[limit];
+		this.values = new float[limit];
+	}
+
+	/**
+	 * add a reading to the buffer, replacing the oldest reading if the buffer is full
+	 *
+	 * @param timestamp the timestamp of when the reading occurred
+	 * @param value the value of the reading
+	 */
+	public void add(long timestamp, float value) {
+
+		int mSlot;
+
+		if(size == limit) {
+			// overwrite the oldest reading
+			mSlot = head;
+			head = slot(1);
+		} else {
+			mSlot = slot(size);
+			size++;
+		}
+
+		timestamps[mSlot] = timestamp;
+		values[mSlot] = value;
+	}
+
+	/**
+	 * add the value of a field of a reading to the buffer, replacing the oldest reading if
+	 * the buffer is full
+	 *
+	 * @param reading the reading
+	 * @param field the field to add, one of the constants defined in the ReadingFields class
+	 * @return true if the value was added, false if the reading does not contain the field
+	 * @throws IllegalArgumentException if the field is invalid
+	 */
+	public boolean add(SensorReading reading, int field) {
+
+		if(ReadingFields.hasField(reading, field) == false) {
+			return false;
+		}
+
+		add(reading.getTimestamp(), ReadingFields.getValue(reading, field));
+
+		return true;
+	}
+
+	/**
+	 * @param index the index of the reading, with zero being the oldest reading
+	 * @return the timestamp of the reading
+	 */
+	public long getTimestamp(int index) {
+		checkIndex(index);
+		return timestamps[slot(index)];
+	}
+
+	/**
+	 * @param index the index of the reading, with zero being the oldest reading
+	 * @return the value of the reading
+	 */
+	public float getValue(int index) {
+		checkIndex(index);
+		return values[slot(index)];
+	}
+
+	/**
+	 * remove the oldest readings from the buffer
+	 *
+	 * @param count the number of readings to remove
+	 */
+	public void removeFirst(int count) {
+
+		if(count < 0 || count > size) {
+			throw new IndexOutOfBoundsException("count: " + count + ", size: " + size);
+		}
+
+		head = slot(count);
+		size -= count;
+	}
+
+	/**
+	 * remove readings older than the minimum age
+	 *
+	 * @param minAge the minimum age for readings to remain in the buffer
+	 */
+	public void removeOld(long minAge) {
+
+		int mKept = 0;
+		int mFrom;
+		int mTo;
+
+		// compact the readings that are kept towards the head in a single pass
+		for(int i = 0; i < size; i++) {
+			mFrom = slot(i);
+
+			if(timestamps[mFrom] >= minAge) {
+				mTo = slot(mKept);
+				timestamps[mTo] = timestamps[mFrom];
+				values[mTo] = values[mFrom];
+				mKept++;
+			}
+		}
+
+		size = mKept;
+	}
+
+	/**
+	 * @return the number of readings in the buffer
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the maximum number of readings held in the buffer
+	 */
+	public int getLimit() {
+		return limit;
+	}
+
+	/**
+	 * remove all of the readings from the buffer
+	 */
+	public void clear() {
+		head = 0;
+		size = 0;
+	}
+
+	/*
+	 * determine the array slot used by the reading at the specified index
+	 */
+	private int slot(int index) {
+		int mSlot = head + index;
+
+		if(mSlot >= limit) {
+			mSlot -= limit;
+		}
+
+		return mSlot;
+	}
+
+	/*
+	 * check that the index refers to a reading in the buffer
+	 */
+	private void checkIndex(int index) {
+		if(index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("index: " + index + ", size: " + size);
+		}
+	}
+}
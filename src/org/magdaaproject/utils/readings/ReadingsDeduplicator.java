@@ -0,0 +1,253 @@
+/*
+ * Copyright (C) 2013 The MaGDAA Project
+ *
+ * This file is part of the MaGDAA Library Software
+ *
+ * MaGDAA Library Software is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This source code is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this source code; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.magdaaproject.utils.readings;
+
+/**
+ * a set of the readings that have already been received, keyed by station and timestamp,
+ * used to drop readings that are received more than once, such as readings that reach
+ * a device over more than one path through a mesh network
+ *
+ * the keys are stored in primitive arrays using open addressing with linear probing,
+ * so adding or checking a key does not allocate any objects. the set grows as needed,
+ * and keys older than a minimum age can be removed to bound its size
+ */
+public class ReadingsDeduplicator {
+
+	/*
+	 * public class level constants
+	 */
+
+	/**
+	 * the default initial capacity of the set
+	 */
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	/*
+	 * private class level variables
+	 */
+	private long[] stations;
+	private long[] timestamps;
+	private boolean[] used;
+	private int mask;
+	private int size = 0;
+	private int threshold;
+
+	/**
+	 * construct a new empty set with the default initial capacity
+	 */
+	public ReadingsDeduplicator() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * construct a new empty set
+	 *
+	 * @param capacity the number of keys the set can hold before it grows
+	 * @throws IllegalArgumentException if the capacity is less than one or too large
+	 */
+	public ReadingsDeduplicator(int capacity) {
+
+		if(capacity < 1 || capacity > (1 << 28)) {
+			throw new IllegalArgumentException("the capacity must be between 1 and " + (1 << 28));
+		}
+
+		// keep the table at most half full so that probe sequences stay short
+		allocate(Integer.highestOneBit(capacity * 2 - 1) << 1);
+	}
+
+	/**
+	 * add a key to the set
+	 *
+	 * @param station the identifier of the station that took the reading
+	 * @param timestamp the timestamp of the reading
+	 * @return true if the key was added, false if it was already in the set
+	 */
+	public boolean add(long station, long timestamp) {
+
+		int mSlot = findSlot(station, timestamp);
+
+		if(used[mSlot]) {
+			return false;
+		}
+
+		stations[mSlot] = station;
+		timestamps[mSlot] = timestamp;
+		used[mSlot] = true;
+		size++;
+
+		if(size > threshold) {
+			rehash(stations.length * 2, Long.MIN_VALUE);
+		}
+
+		return true;
+	}
+
+	/**
+	 * check if a key is in the set
+	 *
+	 * @param station the identifier of the station that took the reading
+	 * @param timestamp the timestamp of the reading
+	 * @return true if the key is in the set
+	 */
+	public boolean contains(long station, long timestamp) {
+		return used[findSlot(station, timestamp)];
+	}
+
+	/**
+	 * add the key of a reading to the set, using the station identifier of the reading
+	 *
+	 * @param reading the reading
+	 * @return true if the key was added, false if it was already in the set
+	 */
+	public boolean add(SensorReading reading) {
+		return add(reading.getStationId(), reading.getTimestamp());
+	}
+
+	/**
+	 * add the readings that have not been seen before to a list, using the station identifier of each reading
+	 *
+	 * @param readings the readings to check
+	 * @param output the list to add the new readings to
+	 * @return the number of readings added to the list
+	 */
+	public int filter(Iterable<? extends SensorReading> readings, ReadingsList output) {
+
+		int mCount = 0;
+
+		for(SensorReading mReading : readings) {
+			if(add(mReading)) {
+				output.add(mReading);
+				mCount++;
+			}
+		}
+
+		return mCount;
+	}
+
+	/**
+	 * add the readings from a station that have not been seen before to a list
+	 *
+	 * @param station the identifier of the station that took the readings
+	 * @param readings the readings to check
+	 * @param output the list to add the new readings to
+	 * @return the number of readings added to the list
+	 */
+	public int filter(long station, Iterable<? extends SensorReading> readings, ReadingsList output) {
+
+		int mCount = 0;
+
+		for(SensorReading mReading : readings) {
+			if(add(station, mReading.getTimestamp())) {
+				output.add(mReading);
+				mCount++;
+			}
+		}
+
+		return mCount;
+	}
+
+	/**
+	 * remove the keys with a timestamp older than the minimum age, in a single pass over the set
+	 *
+	 * @param minAge the minimum timestamp for keys to remain in the set
+	 */
+	public void removeOld(long minAge) {
+		rehash(stations.length, minAge);
+	}
+
+	/**
+	 * @return the number of keys in the set
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * remove all of the keys from the set
+	 */
+	public void clear() {
+		for(int i = 0; i < used.length; i++) {
+			used[i] = false;
+		}
+
+		size = 0;
+	}
+
+	/*
+	 * find the slot holding a key, or the empty slot where it should be added
+	 */
+	private int findSlot(long station, long timestamp) {
+
+		int mSlot = hash(station, timestamp) & mask;
+
+		while(used[mSlot] && (timestamps[mSlot] != timestamp || stations[mSlot] != station)) {
+			mSlot = (mSlot + 1) & mask;
+		}
+
+		return mSlot;
+	}
+
+	/*
+	 * mix the bits of the key so that sequential timestamps are spread across the table
+	 */
+	private static int hash(long station, long timestamp) {
+
+		long mHash = timestamp * 0x9E3779B97F4A7C15L + station;
+
+		mHash ^= mHash >>> 33;
+		mHash *= 0xFF51AFD7ED558CCDL;
+		mHash ^= mHash >>> 33;
+
+		return (int) mHash;
+	}
+
+	/*
+	 * copy the keys that are at least the minimum age into a new table
+	 */
+	private void rehash(int capacity, long minAge) {
+
+		long[] mStations = stations;
+		long[] mTimestamps = timestamps;
+		boolean[] mUsed = used;
+
+		allocate(capacity);
+		size = 0;
+
+		int mSlot;
+
+		for(int i = 0; i < mUsed.length; i++) {
+			if(mUsed[i] && mTimestamps[i] >= minAge) {
+				mSlot = findSlot(mStations[i], mTimestamps[i]);
+				stations[mSlot] = mStations[i];
+				timestamps[mSlot] = mTimestamps[i];
+				used[mSlot] = true;
+				size++;
+			}
+		}
+	}
+
+	private void allocate(int capacity) {
+		stations = new long[capacity];
+		timestamps = new long[capacity];
+		used = new boolean[capacity];
+		mask = capacity - 1;
+		threshold = capacity / 2;
+	}
+}
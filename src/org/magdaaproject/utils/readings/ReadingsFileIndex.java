@@ -0,0 +1,480 @@
+/*
+ * Copyright (C) 2013 The MaGDAA Project
+ *
+ * This file is part of the MaGDAA Library Software
+ *
+ * MaGDAA Library Software is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This source code is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this source code; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.magdaaproject.utils.readings;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.magdaaproject.utils.FileUtils;
+
+/**
+ * a sparse time index over the readings files in a directory, such as the files written
+ * by the dumpData method of the ReadingsList class, so that the readings in a time range
+ * can be read without parsing every file
+ *
+ * the index holds the earliest and latest timestamp in each file, and the timestamp and
+ * byte offset of every INTERVAL readings. it is stored in a small sidecar file in the same
+ * directory, with one line per readings file appended as each file is written. each line
+ * ends with a marker field so that a line cut short by a crash is ignored
+ */
+public class ReadingsFileIndex {
+
+	/*
+	 * public class level constants
+	 */
+
+	/**
+	 * the name of the sidecar file that holds the index
+	 */
+	public static final String INDEX_FILE_NAME = "_readings.idx";
+
+	/**
+	 * the number of readings between the offsets stored in the index
+	 */
+	public static final int INTERVAL = 256;
+
+	/*
+	 * private class level constants
+	 */
+	private static final String END_OF_ENTRY = ".";
+
+	/*
+	 * private class level variables
+	 */
+	private File directory;
+	private List<Entry> entries = new ArrayList<Entry>();
+
+	/**
+	 * open the index of a directory, loading the existing sidecar file if there is one
+	 *
+	 * @param directory the path of the directory containing the readings files
+	 * @throws IOException if the directory or the sidecar file cannot be read
+	 */
+	public ReadingsFileIndex(String directory) throws IOException {
+
+		if(FileUtils.isDirectoryReadable(directory) == false) {
+			throw new IOException("unable to access specified path '" + directory + "'");
+		}
+
+		this.directory = new File(directory);
+
+		File mIndexFile = new File(this.directory, INDEX_FILE_NAME);
+
+		if(mIndexFile.exists() == false) {
+			return;
+		}
+
+		BufferedReader mReader = new BufferedReader(new InputStreamReader(new FileInputStream(mIndexFile), "US-ASCII"));
+
+		try {
+			String mLine;
+			Entry mEntry;
+
+			while((mLine = mReader.readLine()) != null) {
+				mEntry = Entry.parse(mLine);
+
+				// skip a line that was only partly written
+				if(mEntry != null) {
+					entries.add(mEntry);
+				}
+			}
+		} finally {
+			mReader.close();
+		}
+	}
+
+	/**
+	 * add the entry for a readings file to the index, appending it to the sidecar file
+	 *
+	 * @param entry the entry for the file, as built while the file was written
+	 * @throws IOException if the sidecar file cannot be written
+	 */
+	public void add(Entry entry) throws IOException {
+
+		if(entry.count == 0) {
+			return;
+		}
+
+		File mIndexFile = new File(directory, INDEX_FILE_NAME);
+
+		// make sure a line that was only partly written is not joined to the new line
+		boolean mNewLine = false;
+
+		if(mIndexFile.length() > 0) {
+			RandomAccessFile mFile = new RandomAccessFile(mIndexFile, "r");
+
+			try {
+				mFile.seek(mFile.length() - 1);
+				mNewLine = mFile.read() != '\n';
+			} finally {
+				mFile.close();
+			}
+		}
+
+		Writer mWriter = new OutputStreamWriter(new FileOutputStream(mIndexFile, true), "US-ASCII");
+
+		try {
+			if(mNewLine) {
+				mWriter.write('\n');
+			}
+
+			mWriter.write(entry.toString());
+			mWriter.write('\n');
+		} finally {
+			mWriter.close();
+		}
+
+		entries.add(entry);
+	}
+
+	/**
+	 * add a readings file that was written without an index entry, such as a file written
+	 * before the index was created, by reading the whole file. a file that is already in
+	 * the index is not read or added again
+	 *
+	 * @param path the path of the readings file
+	 * @throws IOException if the file cannot be read or the sidecar file cannot be written
+	 */
+	public void addFile(String path) throws IOException {
+
+		File mFile = new File(path);
+
+		if(contains(mFile.getName())) {
+			return;
+		}
+
+		Entry mEntry = new Entry(mFile.getName());
+
+		ReadingsParser mParser = new ReadingsParser(new FileInputStream(mFile));
+
+		try {
+			while(mParser.next()) {
+				mEntry.add(mParser.getTimestamp(), mParser.getLineOffset());
+			}
+		} finally {
+			mParser.close();
+		}
+
+		add(mEntry);
+	}
+
+	/**
+	 * check if a readings file is in the index
+	 *
+	 * @param fileName the name of the readings file, without the directory
+	 * @return true if the file is in the index
+	 */
+	public boolean contains(String fileName) {
+
+		for(Entry mEntry : entries) {
+			if(mEntry.fileName.equals(fileName)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * get the entries for the files that may contain readings in a time range
+	 *
+	 * @param from the earliest timestamp in the range
+	 * @param to the timestamp to end the range at, readings at this time are not included
+	 * @return the matching entries, in the order they were added
+	 */
+	public List<Entry> getEntries(long from, long to) {
+
+		List<Entry> mEntries = new ArrayList<Entry>();
+
+		for(Entry mEntry : entries) {
+			if(mEntry.maxTimestamp >= from && mEntry.minTimestamp < to) {
+				mEntries.add(mEntry);
+			}
+		}
+
+		return mEntries;
+	}
+
+	/**
+	 * read the readings in a time range, only opening the files that may contain readings in
+	 * the range and starting from the nearest indexed offset in each file
+	 *
+	 * the files are read one after another, in the order they were added to the index, and
+	 * the readings of each file are appended in the order they appear in it. the readings
+	 * are only in timestamp order if the files are ordered, were added in time order and do
+	 * not overlap in time, otherwise sort the list with the ReadingsSorter class
+	 *
+	 * @param from the earliest timestamp in the range
+	 * @param to the timestamp to end the range at, readings at this time are not included
+	 * @param readings the list to add the readings to
+	 * @return the number of readings added to the list
+	 * @throws IOException if a file cannot be read
+	 */
+	public int read(long from, long to, ReadingsList readings) throws IOException {
+
+		int mCount = 0;
+
+		for(Entry mEntry : getEntries(from, to)) {
+
+			File mFile = new File(directory, mEntry.fileName);
+
+			if(mFile.exists() == false) {
+				continue;
+			}
+
+			FileInputStream mInput = new FileInputStream(mFile);
+			ReadingsParser mParser = new ReadingsParser(mInput);
+
+			try {
+				mInput.getChannel().position(mEntry.getOffset(from));
+
+				SensorReading mReading;
+
+				while(mParser.next()) {
+
+					long mTimestamp = mParser.getTimestamp();
+
+					if(mTimestamp >= to && mEntry.ordered) {
+						break;
+					}
+
+					// only lines in the range are parsed beyond the timestamp
+					if(mTimestamp >= from && mTimestamp < to) {
+						mReading = mParser.getReading();
+
+						if(mReading != null) {
+							readings.add(mReading);
+							mCount++;
+						}
+					}
+				}
+			} finally {
+				mParser.close();
+			}
+		}
+
+		return mCount;
+	}
+
+	/**
+	 * @return the number of files in the index
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * the index entry for a single readings file, built by a ReadingsWriter as the file is written
+	 */
+	public static class Entry {
+
+		private String fileName;
+		private long minTimestamp = Long.MAX_VALUE;
+		private long maxTimestamp = Long.MIN_VALUE;
+		private int count = 0;
+		private boolean ordered = true;
+
+		private long[] timestamps = new long[4];
+		private long[] offsets = new long[4];
+		private int samples = 0;
+
+		/**
+		 * construct a new empty entry
+		 *
+		 * @param fileName the name of the readings file, without the directory
+		 */
+		public Entry(String fileName) {
+			this.fileName = fileName;
+		}
+
+		/*
+		 * record a reading that is about to be written at the offset in the file
+		 */
+		void add(long timestamp, long offset) {
+
+			if(count > 0 && timestamp < maxTimestamp) {
+				ordered = false;
+			}
+
+			if(count % INTERVAL == 0) {
+				if(samples == timestamps.length) {
+					long[] mTimestamps = new long[samples * 2];
+					long[] mOffsets = new long[samples * 2];
+					System.arraycopy(timestamps, 0, mTimestamps, 0, samples);
+					System.arraycopy(offsets, 0, mOffsets, 0, samples);
+					timestamps = mTimestamps;
+					offsets = mOffsets;
+				}
+
+				timestamps[samples] = timestamp;
+				offsets[samples] = offset;
+				samples++;
+			}
+
+			minTimestamp = Math.min(minTimestamp, timestamp);
+			maxTimestamp = Math.max(maxTimestamp, timestamp);
+			count++;
+		}
+
+		/**
+		 * get the offset to start reading from to find the readings at or after a timestamp
+		 *
+		 * @param timestamp the timestamp
+		 * @return the offset in the file
+		 */
+		public long getOffset(long timestamp) {
+
+			if(ordered == false) {
+				return 0;
+			}
+
+			// find the last sample before the timestamp, as equal timestamps may span samples
+			int mLow = 0;
+			int mHigh = samples;
+			int mMiddle;
+
+			while(mLow < mHigh) {
+				mMiddle = (mLow + mHigh) >>> 1;
+
+				if(timestamps[mMiddle] < timestamp) {
+					mLow = mMiddle + 1;
+				} else {
+					mHigh = mMiddle;
+				}
+			}
+
+			return mLow == 0 ? 0 : offsets[mLow - 1];
+		}
+
+		/**
+		 * @return the name of the readings file
+		 */
+		public String getFileName() {
+			return fileName;
+		}
+
+		/**
+		 * @return the earliest timestamp in the file
+		 */
+		public long getMinTimestamp() {
+			return minTimestamp;
+		}
+
+		/**
+		 * @return the latest timestamp in the file
+		 */
+		public long getMaxTimestamp() {
+			return maxTimestamp;
+		}
+
+		/**
+		 * @return the number of readings in the file
+		 */
+		public int getCount() {
+			return count;
+		}
+
+		/**
+		 * @return true if the readings in the file are in timestamp order
+		 */
+		public boolean isOrdered() {
+			return ordered;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see java.lang.Object#toString()
+		 */
+		@Override
+		public String toString() {
+
+			StringBuilder mBuilder = new StringBuilder();
+
+			mBuilder.append(fileName).append('\t');
+			mBuilder.append(minTimestamp).append('\t');
+			mBuilder.append(maxTimestamp).append('\t');
+			mBuilder.append(count).append('\t');
+			mBuilder.append(ordered ? 1 : 0).append('\t');
+
+			for(int i = 0; i < samples; i++) {
+				if(i > 0) {
+					mBuilder.append(',');
+				}
+
+				mBuilder.append(timestamps[i]).append(':').append(offsets[i]);
+			}
+
+			mBuilder.append('\t').append(END_OF_ENTRY);
+
+			return mBuilder.toString();
+		}
+
+		/*
+		 * parse a line of the sidecar file, returning null if the line is incomplete
+		 */
+		private static Entry parse(String line) {
+
+			String[] mFields = line.split("\t");
+
+			if(mFields.length != 7 || END_OF_ENTRY.equals(mFields[6]) == false) {
+				return null;
+			}
+
+			try {
+				Entry mEntry = new Entry(mFields[0]);
+
+				mEntry.minTimestamp = Long.parseLong(mFields[1]);
+				mEntry.maxTimestamp = Long.parseLong(mFields[2]);
+				mEntry.count = Integer.parseInt(mFields[3]);
+				mEntry.ordered = "1".equals(mFields[4]);
+
+				String[] mSamples = mFields[5].split(",");
+
+				mEntry.timestamps = new long[mSamples.length];
+				mEntry.offsets = new long[mSamples.length];
+
+				for(String mSample : mSamples) {
+					int mSeparator = mSample.indexOf(':');
+
+					if(mSeparator == -1) {
+						return null;
+					}
+
+					mEntry.timestamps[mEntry.samples] = Long.parseLong(mSample.substring(0, mSeparator));
+					mEntry.offsets[mEntry.samples] = Long.parseLong(mSample.substring(mSeparator + 1));
+					mEntry.samples++;
+				}
+
+				return mEntry;
+			} catch (NumberFormatException e) {
+				return null;
+			}
+		}
+	}
+}
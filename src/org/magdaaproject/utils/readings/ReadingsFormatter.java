@@ -0,0 +1,299 @@
+/*
+ * Copyright (C) 2013 The MaGDAA Project
+ *
+ * This file is part of the MaGDAA Library Software
+ *
+ * MaGDAA Library Software is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This source code is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this source code; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.magdaaproject.utils.readings;
+
+/**
+ * a class which formats sensor readings as a line of tab separated ascii text in a
+ * reusable byte buffer, using the same field order as the toString methods of the
+ * reading classes. a reading from a station other than the local station has an extra
+ * field at the end of the line, holding the station identifier after a STATION_PREFIX
+ *
+ * by default float values are formatted the same way as Float.toString. when a fixed
+ * precision is set the float values are instead rounded to that number of decimal
+ * places and the digits are written straight into the buffer, so formatting a reading
+ * does not allocate any memory
+ */
+public class ReadingsFormatter {
+
+	/*
+	 * public class level constants
+	 */
+
+	/**
+	 * the precision that formats float values the same way as Float.toString
+	 */
+	public static final int FULL_PRECISION = -1;
+
+	/**
+	 * the maximum number of decimal places for a fixed precision
+	 */
+	public static final int MAX_PRECISION = 9;
+
+	/**
+	 * the character at the start of the field holding the station identifier
+	 */
+	public static final char STATION_PREFIX = '@';
+
+	/*
+	 * private class level constants
+	 */
+	private static final long[] POWERS_OF_TEN = {
+		1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L, 1000000000L
+	};
+
+	// the largest value that can be scaled into a long without overflowing
+	private static final double MAX_SCALED = 9.0E18;
+
+	private static final int INITIAL_BUFFER_SIZE = 512;
+
+	/*
+	 * private class level variables
+	 */
+	private int precision;
+	private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+	private int length;
+
+	/**
+	 * construct a new formatter which formats float values the same way as Float.toString
+	 */
+	public ReadingsFormatter() {
+		this(FULL_PRECISION);
+	}
+
+	/**
+	 * construct a new formatter
+	 *
+	 * @param precision the number of decimal places for float values, or FULL_PRECISION
+	 * @throws IllegalArgumentException if the precision is invalid
+	 */
+	public ReadingsFormatter(int precision) {
+
+		if(precision != FULL_PRECISION && (precision < 0 || precision > MAX_PRECISION)) {
+			throw new IllegalArgumentException("the precision must be between 0 and " + MAX_PRECISION);
+		}
+
+		this.precision = precision;
+	}
+
+	/**
+	 * format a reading followed by a new line into the buffer, replacing the previous contents of the buffer
+	 *
+	 * @param reading the reading to format
+	 * @return the number of bytes in the buffer
+	 */
+	public int format(SensorReading reading) {
+
+		length = 0;
+
+		if(reading instanceof WeatherReading) {
+			WeatherReading mReading = (WeatherReading) reading;
+
+			appendField(mReading.getTimestamp());
+			appendField(mReading.getBarometricTrend());
+			appendField(mReading.getBarometer());
+			appendField(mReading.getTemperature());
+			appendField(mReading.getHumidity());
+			appendField(mReading.getWindSpeed());
+			appendField(mReading.getAverageWindSpeed());
+			appendField(mReading.getWindDirection());
+			appendField(mReading.getRainRate());
+			appendField(mReading.getRainToday());
+		} else if(reading instanceof TempHumidityReading) {
+			TempHumidityReading mReading = (TempHumidityReading) reading;
+
+			appendField(mReading.getTimestamp());
+			appendField(mReading.getTemp());
+			appendField(mReading.getHumidity());
+		} else {
+			appendString(reading.toString());
+		}
+
+		if(reading.getStationId() != SensorReading.LOCAL_STATION) {
+			ensureCapacity(1);
+			buffer[length++] = STATION_PREFIX;
+			appendField(reading.getStationId());
+		}
+
+		ensureCapacity(1);
+		buffer[length++] = '\n';
+
+		return length;
+	}
+
+	/**
+	 * @return the buffer holding the last formatted reading, only the first getLength bytes are valid
+	 */
+	public byte[] getBuffer() {
+		return buffer;
+	}
+
+	/**
+	 * @return the number of bytes in the buffer
+	 */
+	public int getLength() {
+		return length;
+	}
+
+	/**
+	 * @return the number of decimal places for float values, or FULL_PRECISION
+	 */
+	public int getPrecision() {
+		return precision;
+	}
+
+	/**
+	 * write a long value as ascii digits into a byte array
+	 *
+	 * @param value the value to write
+	 * @param bytes the array to write to, which must have room for 20 bytes
+	 * @param offset the index to write the first byte at
+	 * @return the number of bytes written
+	 */
+	public static int formatLong(long value, byte[] bytes, int offset) {
+
+		if(value == Long.MIN_VALUE) {
+			// cannot be negated, so is written as a string
+			String mValue = Long.toString(value);
+
+			for(int i = 0; i < mValue.length(); i++) {
+				bytes[offset + i] = (byte) mValue.charAt(i);
+			}
+
+			return mValue.length();
+		}
+
+		int mIndex = offset;
+
+		if(value < 0) {
+			bytes[mIndex++] = '-';
+			value = -value;
+		}
+
+		// write the digits in reverse order and then reverse them in place
+		int mStart = mIndex;
+
+		do {
+			bytes[mIndex++] = (byte) ('0' + (value % 10));
+			value /= 10;
+		} while(value != 0);
+
+		byte mSwap;
+
+		for(int i = mStart, j = mIndex - 1; i < j; i++, j--) {
+			mSwap = bytes[i];
+			bytes[i] = bytes[j];
+			bytes[j] = mSwap;
+		}
+
+		return mIndex - offset;
+	}
+
+	/**
+	 * write a float value rounded to a fixed number of decimal places into a byte array,
+	 * values too large to be rounded this way are written the same way as Float.toString
+	 *
+	 * @param value the value to write
+	 * @param precision the number of decimal places, between 0 and MAX_PRECISION
+	 * @param bytes the array to write to, which must have room for 32 bytes
+	 * @param offset the index to write the first byte at
+	 * @return the number of bytes written
+	 */
+	public static int formatFloat(float value, int precision, byte[] bytes, int offset) {
+
+		double mScaled = (double) value * POWERS_OF_TEN[precision];
+
+		if(Double.isNaN(mScaled) || Math.abs(mScaled) >= MAX_SCALED) {
+			return formatString(Float.toString(value), bytes, offset);
+		}
+
+		long mRounded = Math.round(mScaled);
+		int mIndex = offset;
+
+		if(mRounded < 0) {
+			bytes[mIndex++] = '-';
+			mRounded = -mRounded;
+		}
+
+		mIndex += formatLong(mRounded / POWERS_OF_TEN[precision], bytes, mIndex);
+
+		if(precision > 0) {
+			bytes[mIndex++] = '.';
+
+			long mFraction = mRounded % POWERS_OF_TEN[precision];
+
+			// write the fraction with leading zeros, from the last digit back
+			for(int i = precision - 1; i >= 0; i--) {
+				bytes[mIndex + i] = (byte) ('0' + (mFraction % 10));
+				mFraction /= 10;
+			}
+
+			mIndex += precision;
+		}
+
+		return mIndex - offset;
+	}
+
+	/*
+	 * append a field followed by the field separator
+	 */
+	private void appendField(long value) {
+		ensureCapacity(21);
+		length += formatLong(value, buffer, length);
+		buffer[length++] = '\t';
+	}
+
+	private void appendField(float value) {
+
+		if(precision == FULL_PRECISION) {
+			appendString(Float.toString(value));
+		} else {
+			ensureCapacity(33);
+			length += formatFloat(value, precision, buffer, length);
+		}
+
+		buffer[length++] = '\t';
+	}
+
+	/*
+	 * append a string, leaving room for a separator
+	 */
+	private void appendString(String value) {
+		ensureCapacity(value.length() + 1);
+		length += formatString(value, buffer, length);
+	}
+
+	private static int formatString(String value, byte[] bytes, int offset) {
+
+		for(int i = 0; i < value.length(); i++) {
+			bytes[offset + i] = (byte) value.charAt(i);
+		}
+
+		return value.length();
+	}
+
+	private void ensureCapacity(int extra) {
+
+		if(length + extra > buffer.length) {
+			byte[] mBuffer = new byte[Math.max(buffer.length * 2, length + extra)];
+			System.arraycopy(buffer, 0, mBuffer, 0, length);
+			buffer = mBuffer;
+		}
+	}
+}
@@ -19,21 +19,41 @@
  */
 package org.magdaaproject.utils.readings;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.LinkedList;
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
 
 import org.magdaaproject.utils.FileUtils;
 
 /**
  * a list of sensor readings that automatically restricts the number
  * of items in the list to preset maximum
+ *
+ * the readings are stored in a ring buffer so adding a reading, and evicting the
+ * oldest reading once the limit is reached, are constant time operations that
+ * do not allocate any memory once the buffer has grown to the limit. a ReadingsBuffer
+ * keeps the timestamps and values of a single field in primitive arrays instead, so
+ * that no reading objects are kept at all
+ *
+ * while readings are added in timestamp order the list is time indexed, and old
+ * readings are found using a binary search and removed in a single operation
+ *
+ * rolling statistics for a field of the readings, such as the minimum, maximum and mean
+ * temperature, are maintained as readings are added and evicted once they have been
+ * requested using the {@link #getStatistics(int) getStatistics} method
  */
-public class ReadingsList extends LinkedList<SensorReading> {
-	
+public class ReadingsList extends AbstractList<SensorReading> implements RandomAccess, Serializable {
+
 	/*
 	 * public class level constants
 	 */
-	
+
 	/**
 	 * default item limit for a readings list
 	 */
@@ -42,90 +62,624 @@ public class ReadingsList extends LinkedList<SensorReading> {
 	/*
 	 * private class level constants
 	 */
-	private static final long serialVersionUID = 3667976620012107777L;
-	
+	// changed when the list stopped extending LinkedList, as the serialized form is not compatible
+	private static final long serialVersionUID = -2906453517302761584L;
+
+	private static final int INITIAL_CAPACITY = 16;
+
 	/*
 	 * private class level variables
 	 */
 	private int limit;
-	
+
+	private SensorReading[] items;
+	private int head = 0;
+	private int size = 0;
+
+	// the index of the last reading that is older than the reading before it, the list is
+	// time ordered while this is zero. it may overstate the index, but never understates it
+	private int lastInversion = 0;
+
+	private transient RollingStatistics[] statistics;
+	private transient boolean statisticsStale = false;
+
 	/**
 	 *construct a new readings list with the default item limit
 	 */
 	public ReadingsList() {
-		super();
-		this.limit = DEFAULT_LIMIT;
+		this(DEFAULT_LIMIT);
 	}
-	
+
 	/**
 	 * construct a new readings list with the specified item limit
-	 * 
+	 *
 	 * @param limit the number maximum items allowed in the list
+	 * @throws IllegalArgumentException if the limit is less than one
 	 */
 	public ReadingsList(int limit) {
 		super();
+
+		if(limit < 1) {
+			throw new IllegalArgumentException("the limit must be at least one");
+		}
+
 		this.limit = limit;
+		this.items = new SensorReading[Math.min(limit, INITIAL_CAPACITY)];
 	}
-	
+
+	/**
+	 * @return the maximum number of items allowed in the list
+	 */
+	public int getLimit() {
+		return limit;
+	}
+
+	/**
+	 * determine if the readings in the list are in timestamp order, the list stops being
+	 * time indexed when a reading is added or set out of order, and is time indexed again
+	 * once the readings out of order have been removed or evicted
+	 *
+	 * @return true if the readings in the list are in timestamp order
+	 */
+	public boolean isTimeOrdered() {
+		return lastInversion == 0;
+	}
+
 	/**
 	 * add an item to the ReadingsList and remove any old items
 	 */
 	@Override
 	public boolean add(SensorReading item) {
-		
-		// add the new item
-		super.add(item);
-		
-		// remove any items over the limit
-		while (super.size() > limit) { 
-			super.remove(); 
-		}
-		
+
+		// check to see if the item keeps the list in time order
+		boolean mInversion = size > 0 && item.getTimestamp() < getLast().getTimestamp();
+
+		if(size == limit) {
+			// the list is full so overwrite the oldest item
+			removeStatistics(items[head]);
+			items[head] = item;
+			head = advance(head, 1);
+			shiftInversion(1);
+		} else {
+			// grow the buffer if required, up to the limit
+			if(size == items.length) {
+				grow();
+			}
+
+			items[advance(head, size)] = item;
+			size++;
+		}
+
+		if(mInversion) {
+			lastInversion = size - 1;
+		}
+
+		addStatistics(item);
+		modCount++;
+
 		return true;
 	}
-	
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.util.AbstractList#get(int)
+	 */
+	@Override
+	public SensorReading get(int index) {
+		checkIndex(index);
+		return items[advance(head, index)];
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.util.AbstractList#set(int, java.lang.Object)
+	 */
+	@Override
+	public SensorReading set(int index, SensorReading item) {
+		checkIndex(index);
+
+		int mSlot = advance(head, index);
+		SensorReading mOldItem = items[mSlot];
+		items[mSlot] = item;
+
+		// check to see if the item keeps the list in time order
+		if(index > 0 && item.getTimestamp() < get(index - 1).getTimestamp()) {
+			lastInversion = Math.max(lastInversion, index);
+		}
+
+		if(index < size - 1 && item.getTimestamp() > get(index + 1).getTimestamp()) {
+			lastInversion = Math.max(lastInversion, index + 1);
+		}
+
+		markStatisticsStale();
+
+		return mOldItem;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.util.AbstractList#remove(int)
+	 */
+	@Override
+	public SensorReading remove(int index) {
+		checkIndex(index);
+
+		SensorReading mItem = items[advance(head, index)];
+
+		if(index == 0) {
+			// removing the oldest item only requires moving the head
+			removeStatistics(mItem);
+			items[head] = null;
+			head = advance(head, 1);
+		} else {
+			// shuffle the newer items down to fill the gap
+			for(int i = index; i < size - 1; i++) {
+				items[advance(head, i)] = items[advance(head, i + 1)];
+			}
+			items[advance(head, size - 1)] = null;
+		}
+
+		size--;
+		modCount++;
+
+		if(index != 0) {
+			markStatisticsStale();
+		}
+
+		// the readings after the removed reading have moved down one place
+		if(index <= lastInversion) {
+			shiftInversion(1);
+		}
+
+		// the readings either side of the removed reading are now next to each other
+		if(index > 0 && index < size && get(index).getTimestamp() < get(index - 1).getTimestamp()) {
+			lastInversion = Math.max(lastInversion, index);
+		}
+
+		return mItem;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.util.AbstractCollection#size()
+	 */
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.util.AbstractList#clear()
+	 */
+	@Override
+	public void clear() {
+
+		for(int i = 0; i < size; i++) {
+			items[advance(head, i)] = null;
+		}
+
+		head = 0;
+		size = 0;
+		lastInversion = 0;
+		modCount++;
+
+		rebuildStatistics();
+	}
+
+	/**
+	 * remove the oldest item in the list
+	 *
+	 * @return the oldest item in the list
+	 * @throws NoSuchElementException if the list is empty
+	 */
+	public SensorReading remove() {
+		if(size == 0) {
+			throw new NoSuchElementException();
+		}
+
+		return remove(0);
+	}
+
+	/**
+	 * @return the oldest item in the list
+	 * @throws NoSuchElementException if the list is empty
+	 */
+	public SensorReading getFirst() {
+		if(size == 0) {
+			throw new NoSuchElementException();
+		}
+
+		return items[head];
+	}
+
+	/**
+	 * @return the newest item in the list
+	 * @throws NoSuchElementException if the list is empty
+	 */
+	public SensorReading getLast() {
+		if(size == 0) {
+			throw new NoSuchElementException();
+		}
+
+		return items[advance(head, size - 1)];
+	}
+
 	/**
 	 * remove readings older than the minimum age
-	 * 
+	 *
 	 * @param minAge the minimum age for readings to remain in the list
 	 */
 	public void removeOld(long minAge) {
-		
+
+		if(lastInversion == 0) {
+			// all of the old readings are at the start of the list
+			removeFirst(indexOfTimestamp(minAge));
+			return;
+		}
+
 		SensorReading mReading;
-		
-		// loop through all of the objects
-		for(int i = 0; i < this.size(); i++) {
-			
+		int mKept = 0;
+		long mPrevious = Long.MIN_VALUE;
+
+		lastInversion = 0;
+
+		// compact the readings that are kept towards the head in a single pass, finding
+		// any readings that are still out of order as they are moved
+		for(int i = 0; i < size; i++) {
+
 			// get the next object in the list
-			mReading = this.get(i);
-			
-			if(mReading.getTimestamp() < minAge) {
-				this.remove(i);
-				i--;
-			}	
+			mReading = items[advance(head, i)];
+
+			if(mReading.getTimestamp() >= minAge) {
+				if(mReading.getTimestamp() < mPrevious) {
+					lastInversion = mKept;
+				}
+
+				mPrevious = mReading.getTimestamp();
+				items[advance(head, mKept)] = mReading;
+				mKept++;
+			}
+		}
+
+		// release the references to the removed readings
+		for(int i = mKept; i < size; i++) {
+			items[advance(head, i)] = null;
+		}
+
+		if(mKept != size) {
+			size = mKept;
+			modCount++;
+
+			rebuildStatistics();
+		}
+	}
+
+	/**
+	 * find the index of the first reading with a timestamp equal to or later than
+	 * the supplied timestamp, using a binary search of a time ordered list
+	 *
+	 * @param timestamp the timestamp to search for
+	 * @return the index of the first matching reading, or the size of the list if all readings are earlier
+	 * @throws IllegalStateException if the list is not in time order
+	 */
+	public int indexOfTimestamp(long timestamp) {
+
+		if(lastInversion != 0) {
+			throw new IllegalStateException("the list is not in time order");
+		}
+
+		int mLow = 0;
+		int mHigh = size;
+		int mMiddle;
+
+		while(mLow < mHigh) {
+			mMiddle = (mLow + mHigh) >>> 1;
+
+			if(items[advance(head, mMiddle)].getTimestamp() < timestamp) {
+				mLow = mMiddle + 1;
+			} else {
+				mHigh = mMiddle;
+			}
+		}
+
+		return mLow;
+	}
+
+	/**
+	 * remove the oldest readings from the list
+	 *
+	 * @param count the number of readings to remove
+	 * @throws IndexOutOfBoundsException if the count is negative or larger than the size of the list
+	 */
+	public void removeFirst(int count) {
+
+		if(count < 0 || count > size) {
+			throw new IndexOutOfBoundsException("count: " + count + ", size: " + size);
+		}
+
+		if(count == 0) {
+			return;
+		}
+
+		// release the references to the removed readings
+		for(int i = 0; i < count; i++) {
+			removeStatistics(items[advance(head, i)]);
+			items[advance(head, i)] = null;
 		}
+
+		head = advance(head, count);
+		size -= count;
+		shiftInversion(count);
+		modCount++;
 	}
-	
+
+	/**
+	 * get the rolling statistics for a field of the readings in the list. the first
+	 * request for a field calculates the statistics from the readings in the list, after
+	 * that the statistics are updated as readings are added and evicted
+	 *
+	 * @param field the field, one of the field constants defined in the ReadingFields class
+	 * @return the rolling statistics for the field
+	 * @throws IllegalArgumentException if the field is invalid
+	 */
+	public RollingStatistics getStatistics(int field) {
+
+		if(field < 0 || field >= ReadingFields.FIELD_COUNT) {
+			throw new IllegalArgumentException("the field is invalid");
+		}
+
+		if(statistics == null) {
+			statistics = new RollingStatistics[ReadingFields.FIELD_COUNT];
+		}
+
+		updateStatistics();
+
+		if(statistics[field] == null) {
+			statistics[field] = new RollingStatistics(this);
+			populateStatistics(field);
+		}
+
+		return statistics[field];
+	}
+
 	/**
 	 * dump the data contained in this list to a file
-	 * 
+	 *
 	 * @param directory the directory used to store the file
 	 * @return the full path of the file containing the data
 	 * @throws IOException if something bad happens
 	 */
 	public String dumpData(String directory) throws IOException {
-		
-		// loop through all of the objects building the contents of the file
-		StringBuilder mBuilder = new StringBuilder();
+		return dumpData(directory, null);
+	}
+
+	/**
+	 * dump the data contained in this list to a file, adding the file to an index of the
+	 * readings files in the directory
+	 *
+	 * @param directory the directory used to store the file
+	 * @param index the index of the readings files in the directory, or null if the file should not be indexed
+	 * @return the full path of the file containing the data
+	 * @throws IOException if something bad happens
+	 */
+	public String dumpData(String directory, ReadingsFileIndex index) throws IOException {
+		return dumpData(directory, index, ReadingsFormatter.FULL_PRECISION);
+	}
+
+	/**
+	 * dump the data contained in this list to a file, writing float values with a fixed number
+	 * of decimal places and adding the file to an index of the readings files in the directory
+	 *
+	 * @param directory the directory used to store the file
+	 * @param index the index of the readings files in the directory, or null if the file should not be indexed
+	 * @param precision the number of decimal places for float values, or ReadingsFormatter.FULL_PRECISION
+	 * @return the full path of the file containing the data
+	 * @throws IOException if something bad happens
+	 */
+	public String dumpData(String directory, ReadingsFileIndex index, int precision) throws IOException {
+
+		if(size == 0) {
+			throw new IllegalArgumentException("the list does not contain any readings");
+		}
+
+		// create the file to hold the data
+		File mFile = FileUtils.createTempFile(directory);
+
+		// stream each of the readings to the file
+		ReadingsWriter mWriter = null;
+		ReadingsFileIndex.Entry mEntry = new ReadingsFileIndex.Entry(mFile.getName());
+		boolean mWritten = false;
+		try {
+			mWriter = new ReadingsWriter(new FileOutputStream(mFile), precision);
+			mWriter.setIndexEntry(mEntry);
+			mWriter.write(this);
+			mWriter.close();
+			mWritten = true;
+		} catch (FileNotFoundException e) {
+			throw new IOException("unable to open temp file", e);
+		} finally {
+			if(mWritten == false) {
+				// don't leave a partly written file in the directory
+				if(mWriter != null) {
+					try {
+						mWriter.close();
+					} catch (IOException e) {
+						// the write has already failed
+					}
+				}
+
+				mFile.delete();
+			}
+		}
+
+		// only index the file once it has been written successfully
+		if(index != null) {
+			index.add(mEntry);
+		}
+
+		try {
+			return mFile.getCanonicalPath();
+		} catch (IOException e) {
+			throw new IOException("unable to get canonical path", e);
+		}
+	}
+
+	/**
+	 * load the data in a file written by the dumpData method into this list, if the file
+	 * holds more readings than the limit of the list only the newest readings are kept
+	 *
+	 * @param path the path of the file containing the data
+	 * @return the number of readings read from the file
+	 * @throws IOException if something bad happens
+	 */
+	public int loadData(String path) throws IOException {
+
+		ReadingsParser mParser;
+
+		try {
+			mParser = new ReadingsParser(new FileInputStream(path));
+		} catch (FileNotFoundException e) {
+			throw new IOException("unable to open data file", e);
+		}
+
+		try {
+			return mParser.read(this);
+		} finally {
+			mParser.close();
+		}
+	}
+
+	/*
+	 * add a reading to the statistics being tracked
+	 */
+	private void addStatistics(SensorReading item) {
+
+		if(statistics == null || statisticsStale) {
+			return;
+		}
+
+		for(int i = 0; i < statistics.length; i++) {
+			if(statistics[i] != null && ReadingFields.hasField(item, i)) {
+				statistics[i].add(ReadingFields.getValue(item, i));
+			}
+		}
+	}
+
+	/*
+	 * remove the oldest reading from the statistics being tracked
+	 */
+	private void removeStatistics(SensorReading item) {
+
+		if(statistics == null || statisticsStale) {
+			return;
+		}
+
+		for(int i = 0; i < statistics.length; i++) {
+			if(statistics[i] != null && ReadingFields.hasField(item, i)) {
+				statistics[i].removeOldest();
+			}
+		}
+	}
+
+	/*
+	 * note that readings have been changed or removed from somewhere other than the start
+	 * of the list, the statistics are rebuilt once when they are next read, so a bulk
+	 * operation such as a sort that sets every reading does not rebuild them each time
+	 */
+	private void markStatisticsStale() {
+		if(statistics != null) {
+			statisticsStale = true;
+		}
+	}
+
+	/*
+	 * rebuild the statistics if readings have been changed since they were last up to date
+	 */
+	void updateStatistics() {
+		if(statisticsStale) {
+			rebuildStatistics();
+		}
+	}
+
+	/*
+	 * recalculate the statistics being tracked
+	 */
+	private void rebuildStatistics() {
+
+		statisticsStale = false;
+
+		if(statistics == null) {
+			return;
+		}
+
+		for(int i = 0; i < statistics.length; i++) {
+			if(statistics[i] != null) {
+				statistics[i].clear();
+				populateStatistics(i);
+			}
+		}
+	}
+
+	/*
+	 * add all of the readings in the list to the statistics for a field
+	 */
+	private void populateStatistics(int field) {
+
 		SensorReading mReading;
-		
-		for(int i = 0; i < this.size(); i++) {
-			mReading = this.get(i);
-			
-			mBuilder.append(mReading.toString() + "\n");
-		}
-		
-		// save the output to a temporary file
-		return FileUtils.writeTempFile(mBuilder.toString(), directory);
+
+		for(int i = 0; i < size; i++) {
+			mReading = items[advance(head, i)];
+
+			if(ReadingFields.hasField(mReading, field)) {
+				statistics[field].add(ReadingFields.getValue(mReading, field));
+			}
+		}
+	}
+
+	/*
+	 * grow the buffer, unrolling the ring so that the head is at the start of the array
+	 */
+	private void grow() {
+
+		int mCapacity = (int) Math.min((long) items.length * 2, (long) limit);
+		SensorReading[] mItems = new SensorReading[mCapacity];
+
+		for(int i = 0; i < size; i++) {
+			mItems[i] = items[advance(head, i)];
+		}
+
+		items = mItems;
+		head = 0;
+	}
+
+	/*
+	 * account for readings removed from the head of the list, once the last reading out of
+	 * order is at the head of the list the list is in time order again
+	 */
+	private void shiftInversion(int count) {
+		lastInversion = Math.max(0, lastInversion - count);
+	}
+
+	/*
+	 * determine the slot that is the specified distance from the supplied slot
+	 */
+	private int advance(int slot, int distance) {
+		int mSlot = slot + distance;
+
+		if(mSlot >= items.length) {
+			mSlot -= items.length;
+		}
+
+		return mSlot;
+	}
+
+	/*
+	 * check that the index refers to an item in the list
+	 */
+	private void checkIndex(int index) {
+		if(index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("index: " + index + ", size: " + size);
+		}
 	}
 }
@@ -0,0 +1,504 @@
+/*
+ * Copyright (C) 2013 The MaGDAA Project
+ *
+ * This file is part of the MaGDAA Library Software
+ *
+ * MaGDAA Library Software is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This source code is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this source code; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.magdaaproject.utils.readings;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.zip.CRC32;
+
+import org.magdaaproject.utils.FileUtils;
+
+/**
+ * an append only log of sensor readings, written to a series of memory mapped segment
+ * files so that each reading is stored as it arrives instead of in periodic dumps
+ *
+ * each segment holds a fixed number of fixed size records, using the binary format of
+ * the ReadingsBinaryFormat class followed by the station identifier and a CRC32 checksum.
+ * the mapped segment is flushed to storage at a regular interval and when it is full, at
+ * which point a new segment is started. segment files are created full size and filled with zeros, so
+ * when a log is reopened after a crash the end of the log is the first record that is
+ * empty or fails its checksum
+ *
+ * a log is not thread safe, it is intended to be written to by the thread that reads
+ * from the sensor. the flush interval is only checked when a reading is appended, so if
+ * readings stop arriving the records appended since the last flush stay in memory until
+ * the sync method is called. a caller that can be idle for longer than the interval, such
+ * as one waiting on a quiet serial line, must call sync itself, for example each time a
+ * read from the sensor times out
+ */
+public class ReadingsLog implements Closeable {
+
+	/*
+	 * public class level constants
+	 */
+
+	/**
+	 * the size of each record in a segment in bytes
+	 */
+	public static final int RECORD_SIZE = 56;
+
+	/**
+	 * the size of the header at the start of each segment in bytes
+	 */
+	public static final int SEGMENT_HEADER_SIZE = 16;
+
+	/**
+	 * the default number of records in a segment
+	 */
+	public static final int DEFAULT_SEGMENT_RECORDS = 16384;
+
+	/**
+	 * the default number of milliseconds between flushes to storage
+	 */
+	public static final long DEFAULT_SYNC_INTERVAL = 1000;
+
+	/**
+	 * the prefix of the name of each segment file
+	 */
+	public static final String SEGMENT_PREFIX = "magdaa-log-";
+
+	/**
+	 * the extension of each segment file
+	 */
+	public static final String SEGMENT_EXTENSION = ".bin";
+
+	/*
+	 * private class level constants
+	 */
+	private static final int MAGIC = 0x4D47444C; // MGDL
+	private static final int SEQUENCE_DIGITS = 10;
+	private static final int VERSION = 2;
+
+	// the record type, three unused bytes, the record, the station identifier and the checksum at the end
+	private static final int PAYLOAD_OFFSET = 4;
+	private static final int STATION_OFFSET = PAYLOAD_OFFSET + ReadingsBinaryFormat.WEATHER_RECORD_SIZE;
+	private static final int CHECKSUM_OFFSET = RECORD_SIZE - 4;
+
+	// segments written by version 1 have smaller records without the station identifier
+	private static final int VERSION_1 = 1;
+	private static final int VERSION_1_RECORD_SIZE = 48;
+
+	/*
+	 * private class level variables
+	 */
+	private File directory;
+	private int segmentRecords;
+	private long syncInterval;
+
+	private long segmentSequence;
+	private RandomAccessFile segmentFile;
+	private MappedByteBuffer segment;
+	private int segmentCapacity;
+	private int segmentCount;
+
+	private ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+	private CRC32 checksum = new CRC32();
+
+	private long lastSync;
+	private boolean dirty = false;
+
+	/**
+	 * open a log using the default segment size and flush interval, creating it if it does not exist
+	 *
+	 * @param directory the path of the directory to hold the segment files
+	 * @throws IOException if the log cannot be opened
+	 */
+	public ReadingsLog(String directory) throws IOException {
+		this(directory, DEFAULT_SEGMENT_RECORDS, DEFAULT_SYNC_INTERVAL);
+	}
+
+	/**
+	 * open a log, creating it if it does not exist. if the log already exists new readings
+	 * are appended after the last valid record in the newest segment
+	 *
+	 * @param directory the path of the directory to hold the segment files
+	 * @param segmentRecords the number of records in each new segment
+	 * @param syncInterval the number of milliseconds between flushes to storage, checked when a reading is appended, zero flushes after every record
+	 * @throws IllegalArgumentException if a parameter is invalid
+	 * @throws IOException if the log cannot be opened
+	 */
+	public ReadingsLog(String directory, int segmentRecords, long syncInterval) throws IOException {
+
+		if(segmentRecords < 1 || (long) segmentRecords * RECORD_SIZE + SEGMENT_HEADER_SIZE > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("the segmentRecords parameter is invalid");
+		}
+
+		if(syncInterval < 0) {
+			throw new IllegalArgumentException("the syncInterval cannot be negative");
+		}
+
+		if(FileUtils.isDirectoryWriteable(directory) == false) {
+			throw new IOException("unable to access specified path '" + directory + "'");
+		}
+
+		this.directory = new File(directory);
+		this.segmentRecords = segmentRecords;
+		this.syncInterval = syncInterval;
+
+		File[] mSegments = listSegments(this.directory);
+
+		if(mSegments.length == 0) {
+			openSegment(1, true);
+		} else {
+			recover(mSegments[mSegments.length - 1]);
+		}
+
+		lastSync = System.currentTimeMillis();
+	}
+
+	/**
+	 * append a reading to the log, starting a new segment if the current segment is full
+	 *
+	 * @param reading the reading to append
+	 * @throws IllegalArgumentException if the reading cannot be stored in the binary format
+	 * @throws IOException if the reading cannot be written
+	 */
+	public void append(SensorReading reading) throws IOException {
+
+		if(segment == null) {
+			throw new IOException("the log is closed");
+		}
+
+		// build the record on the heap so that the checksum can be calculated from its array
+		record.clear();
+		record.put((byte) ReadingsBinaryFormat.getRecordType(reading));
+
+		while(record.position() < PAYLOAD_OFFSET) {
+			record.put((byte) 0);
+		}
+
+		ReadingsBinaryFormat.write(record, reading);
+
+		while(record.position() < STATION_OFFSET) {
+			record.put((byte) 0);
+		}
+
+		record.putLong(reading.getStationId());
+
+		while(record.position() < CHECKSUM_OFFSET) {
+			record.put((byte) 0);
+		}
+
+		checksum.reset();
+		checksum.update(record.array(), 0, CHECKSUM_OFFSET);
+		record.putInt((int) checksum.getValue());
+
+		if(segmentCount == segmentCapacity) {
+			rollover();
+		}
+
+		segment.position(SEGMENT_HEADER_SIZE + segmentCount * RECORD_SIZE);
+		segment.put(record.array(), 0, RECORD_SIZE);
+		segmentCount++;
+		dirty = true;
+
+		if(System.currentTimeMillis() - lastSync >= syncInterval) {
+			sync();
+		}
+	}
+
+	/**
+	 * flush the records appended since the last flush to storage. this is called by the
+	 * append method once the flush interval has passed, and must be called by the caller
+	 * when no readings have been appended for longer than the interval
+	 */
+	public void sync() {
+
+		if(dirty && segment != null) {
+			segment.force();
+			dirty = false;
+		}
+
+		lastSync = System.currentTimeMillis();
+	}
+
+	/**
+	 * @return the number of records in the current segment
+	 */
+	public int getSegmentCount() {
+		return segmentCount;
+	}
+
+	/**
+	 * @return the sequence number of the current segment
+	 */
+	public long getSegmentSequence() {
+		return segmentSequence;
+	}
+
+	/**
+	 * flush any outstanding records to storage and close the log
+	 *
+	 * @throws IOException if something bad happens
+	 */
+	public void close() throws IOException {
+
+		if(segment == null) {
+			return;
+		}
+
+		sync();
+		segment = null;
+		segmentFile.close();
+		segmentFile = null;
+	}
+
+	/**
+	 * read the readings stored in a log, including readings appended by a log that is still open
+	 *
+	 * @param directory the path of the directory that holds the segment files
+	 * @param minAge the minimum timestamp of the readings to read
+	 * @param readings the list to add the readings to
+	 * @return the number of readings added to the list
+	 * @throws IOException if the log cannot be read
+	 */
+	public static int read(String directory, long minAge, ReadingsList readings) throws IOException {
+
+		if(FileUtils.isDirectoryReadable(directory) == false) {
+			throw new IOException("unable to access specified path '" + directory + "'");
+		}
+
+		ByteBuffer mRecord = ByteBuffer.allocate(RECORD_SIZE);
+		CRC32 mChecksum = new CRC32();
+		SensorReading mReading;
+		int mCount = 0;
+
+		for(File mFile : listSegments(new File(directory))) {
+
+			RandomAccessFile mSegmentFile = new RandomAccessFile(mFile, "r");
+
+			try {
+				FileChannel mChannel = mSegmentFile.getChannel();
+				MappedByteBuffer mSegment = mChannel.map(FileChannel.MapMode.READ_ONLY, 0, mChannel.size());
+
+				if(isValidHeader(mSegment) == false) {
+					continue;
+				}
+
+				int mRecordSize = getRecordSize(mSegment);
+
+				for(int mOffset = SEGMENT_HEADER_SIZE; mOffset + mRecordSize <= mSegment.limit(); mOffset += mRecordSize) {
+
+					if(readRecord(mSegment, mOffset, mRecordSize, mRecord, mChecksum) == false) {
+						break;
+					}
+
+					mReading = ReadingsBinaryFormat.read(mRecord, mRecord.get(0));
+
+					if(mRecordSize == RECORD_SIZE) {
+						mReading.setStationId(mRecord.getLong(STATION_OFFSET));
+					}
+
+					if(mReading.getTimestamp() >= minAge) {
+						readings.add(mReading);
+						mCount++;
+					}
+				}
+			} finally {
+				mSegmentFile.close();
+			}
+		}
+
+		return mCount;
+	}
+
+	/*
+	 * reopen the newest segment and find the end of the valid records
+	 */
+	private void recover(File file) throws IOException {
+
+		String mName = file.getName();
+		long mSequence = Long.parseLong(mName.substring(SEGMENT_PREFIX.length(), mName.length() - SEGMENT_EXTENSION.length()));
+
+		openSegment(mSequence, false);
+
+		if(isValidHeader(segment) == false) {
+			// the segment was being created when the log stopped
+			writeHeader();
+			return;
+		}
+
+		if(getRecordSize(segment) != RECORD_SIZE) {
+			// records are only appended to a segment written by this version
+			rollover();
+			return;
+		}
+
+		while(segmentCount < segmentCapacity && readRecord(segment, SEGMENT_HEADER_SIZE + segmentCount * RECORD_SIZE, RECORD_SIZE, record, checksum)) {
+			segmentCount++;
+		}
+
+		if(segmentCount == segmentCapacity) {
+			rollover();
+			return;
+		}
+
+		// pages can reach storage out of order, so clear any records written after the first
+		// invalid record to stop them being read once the log has been appended to again
+		for(int mOffset = SEGMENT_HEADER_SIZE + segmentCount * RECORD_SIZE; mOffset + RECORD_SIZE <= segment.limit(); mOffset += RECORD_SIZE) {
+			if(segment.get(mOffset) != 0) {
+				for(int i = 0; i < RECORD_SIZE; i++) {
+					segment.put(mOffset + i, (byte) 0);
+				}
+				dirty = true;
+			}
+		}
+
+		sync();
+	}
+
+	/*
+	 * flush and close the current segment and start the next one
+	 */
+	private void rollover() throws IOException {
+
+		long mSequence = segmentSequence + 1;
+
+		close();
+		openSegment(mSequence, true);
+	}
+
+	/*
+	 * open or create a segment file and map it into memory
+	 */
+	private void openSegment(long sequence, boolean create) throws IOException {
+
+		File mFile = new File(directory, String.format(Locale.US, "%s%010d%s", SEGMENT_PREFIX, sequence, SEGMENT_EXTENSION));
+
+		segmentFile = new RandomAccessFile(mFile, "rw");
+
+		long mSize = create ? SEGMENT_HEADER_SIZE + (long) segmentRecords * RECORD_SIZE : segmentFile.length();
+
+		if(mSize < SEGMENT_HEADER_SIZE + RECORD_SIZE) {
+			// the segment was being created when the log stopped
+			mSize = SEGMENT_HEADER_SIZE + (long) segmentRecords * RECORD_SIZE;
+		}
+
+		segment = segmentFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, mSize);
+		segmentSequence = sequence;
+		segmentCount = 0;
+
+		// an existing segment may have been created with a different size
+		segmentCapacity = (int) ((mSize - SEGMENT_HEADER_SIZE) / RECORD_SIZE);
+
+		if(create) {
+			writeHeader();
+		}
+	}
+
+	private void writeHeader() {
+		segment.putInt(0, MAGIC);
+		segment.put(4, (byte) VERSION);
+		segment.putLong(8, segmentSequence);
+		segment.force();
+	}
+
+	private static boolean isValidHeader(ByteBuffer segment) {
+		return segment.limit() >= SEGMENT_HEADER_SIZE && segment.getInt(0) == MAGIC && (segment.get(4) == VERSION || segment.get(4) == VERSION_1);
+	}
+
+	/*
+	 * get the size of the records in a segment with a valid header
+	 */
+	private static int getRecordSize(ByteBuffer segment) {
+		return segment.get(4) == VERSION_1 ? VERSION_1_RECORD_SIZE : RECORD_SIZE;
+	}
+
+	/*
+	 * copy a record out of a segment and check that it is complete, leaving the position
+	 * of the record buffer at the start of the stored reading
+	 */
+	private static boolean readRecord(ByteBuffer segment, int offset, int recordSize, ByteBuffer record, CRC32 checksum) {
+
+		byte[] mBytes = record.array();
+
+		for(int i = 0; i < recordSize; i++) {
+			mBytes[i] = segment.get(offset + i);
+		}
+
+		if(mBytes[0] != ReadingsBinaryFormat.TYPE_TEMP_HUMIDITY && mBytes[0] != ReadingsBinaryFormat.TYPE_WEATHER) {
+			return false;
+		}
+
+		checksum.reset();
+		checksum.update(mBytes, 0, recordSize - 4);
+
+		record.clear();
+
+		if(record.getInt(recordSize - 4) != (int) checksum.getValue()) {
+			return false;
+		}
+
+		record.position(PAYLOAD_OFFSET);
+		return true;
+	}
+
+	/*
+	 * list the segment files in a directory in sequence order
+	 */
+	private static File[] listSegments(File directory) {
+
+		File[] mFiles = directory.listFiles(new FileFilter() {
+			public boolean accept(File file) {
+				return file.isFile() && isSegmentName(file.getName());
+			}
+		});
+
+		if(mFiles == null) {
+			return new File[0];
+		}
+
+		// the sequence numbers are zero padded so the names sort in sequence order
+		Arrays.sort(mFiles);
+
+		return mFiles;
+	}
+
+	/*
+	 * check that a file name is the prefix, a ten digit sequence number and the extension,
+	 * so that a stray file such as a renamed copy of a segment is not opened as a segment
+	 */
+	private static boolean isSegmentName(String name) {
+
+		if(name.length() != SEGMENT_PREFIX.length() + SEQUENCE_DIGITS + SEGMENT_EXTENSION.length()) {
+			return false;
+		}
+
+		if(name.startsWith(SEGMENT_PREFIX) == false || name.endsWith(SEGMENT_EXTENSION) == false) {
+			return false;
+		}
+
+		for(int i = SEGMENT_PREFIX.length(); i < SEGMENT_PREFIX.length() + SEQUENCE_DIGITS; i++) {
+			if(name.charAt(i) < '0' || name.charAt(i) > '9') {
+				return false;
+			}
+		}
+
+		return true;
+	}
+}
@@ -0,0 +1,595 @@
+/*
+ * Copyright (C) 2013 The MaGDAA Project
+ *
+ * This file is part of the MaGDAA Library Software
+ *
+ * MaGDAA Library Software is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This source code is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this source code; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.magdaaproject.utils.readings;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+
+/**
+ * a class used to read sensor readings back from an input stream, such as a file written
+ * by the dumpData method of the ReadingsList class, one reading per line in the same tab
+ * separated format as the toString methods of the reading classes
+ *
+ * the stream is read into a reusable buffer and each line is parsed in place, without
+ * creating a string for the line or its fields. the type of a reading is identified by
+ * the number of fields in the line, lines of an unknown type are skipped. only the
+ * timestamp is parsed when a line is read, the remaining fields are only parsed when the
+ * reading is requested, so readings outside of a time range can be skipped cheaply
+ */
+public class ReadingsParser implements Closeable {
+
+	/*
+	 * public class level constants
+	 */
+
+	/**
+	 * the default size of the buffer used when reading readings
+	 */
+	public static final int BUFFER_SIZE = ReadingsWriter.BUFFER_SIZE;
+
+	/*
+	 * private class level constants
+	 */
+	private static final int WEATHER_FIELD_COUNT = 10;
+	private static final int TEMP_HUMIDITY_FIELD_COUNT = 3;
+
+	// the powers of ten that can be represented exactly as a double
+	private static final double[] POWERS_OF_TEN = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+		1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+
+	// the largest mantissa that can be represented exactly as a double
+	private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+	/*
+	 * private class level variables
+	 */
+	private InputStream input;
+	private byte[] buffer;
+	private int position = 0;
+	private int limit = 0;
+	private boolean endOfStream = false;
+
+	// the offset in the stream of the first byte in the buffer
+	private long bufferOffset = 0;
+
+	// the current line
+	private int lineStart;
+	private int lineEnd;
+	private long timestamp;
+
+	private float[] values = new float[WEATHER_FIELD_COUNT - 1];
+	private long stationId;
+	private WeatherReading weatherReading = new WeatherReading();
+
+	private int count = 0;
+
+	/**
+	 * construct a new readings parser
+	 *
+	 * @param input the input stream to read the readings from
+	 */
+	public ReadingsParser(InputStream input) {
+		this(input, BUFFER_SIZE);
+	}
+
+	/**
+	 * construct a new readings parser
+	 *
+	 * @param input the input stream to read the readings from
+	 * @param bufferSize the initial size of the buffer, the buffer grows if a line is longer than the buffer
+	 * @throws IllegalArgumentException if the input stream is missing or the buffer size is less than one
+	 */
+	public ReadingsParser(InputStream input, int bufferSize) {
+
+		if(input == null) {
+			throw new IllegalArgumentException("the input parameter is required");
+		}
+
+		if(bufferSize < 1) {
+			throw new IllegalArgumentException("the buffer size must be at least 1");
+		}
+
+		this.input = input;
+		this.buffer = new byte[bufferSize];
+	}
+
+	/**
+	 * move to the next line in the stream that is not empty, parsing the timestamp at the start of the line
+	 *
+	 * @return true if there is another line, false if the end of the stream has been reached
+	 * @throws IOException if the stream cannot be read or the line does not start with a valid timestamp
+	 */
+	public boolean next() throws IOException {
+
+		int mScan = position;
+
+		while(true) {
+
+			while(mScan < limit && buffer[mScan] != '\n') {
+				mScan++;
+			}
+
+			if(mScan == limit && endOfStream == false) {
+				// the line is incomplete, read more of the stream and continue from where the scan stopped
+				mScan -= position;
+				fill();
+				mScan += position;
+				continue;
+			}
+
+			if(mScan == limit && position == limit) {
+				return false;
+			}
+
+			lineStart = position;
+			lineEnd = mScan;
+
+			// move past the new line character, if there is one
+			position = mScan < limit ? mScan + 1 : mScan;
+
+			if(lineEnd > lineStart && buffer[lineEnd - 1] == '\r') {
+				lineEnd--;
+			}
+
+			if(lineEnd > lineStart) {
+				break;
+			}
+
+			// skip the empty line
+			mScan = position;
+		}
+
+		int mEnd = indexOfTab(lineStart);
+
+		try {
+			timestamp = parseLong(buffer, lineStart, mEnd);
+		} catch (NumberFormatException e) {
+			throw new IOException("invalid timestamp in line '" + getLine() + "'", e);
+		}
+
+		count++;
+
+		return true;
+	}
+
+	/**
+	 * @return the timestamp of the current line
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	/**
+	 * @return the offset of the start of the current line, relative to where the parser started reading the stream
+	 */
+	public long getLineOffset() {
+		return bufferOffset + lineStart;
+	}
+
+	/**
+	 * parse the current line into a new reading
+	 *
+	 * @return the reading, or null if the line is not a reading of a known type
+	 * @throws IOException if the line contains an invalid value
+	 */
+	public SensorReading getReading() throws IOException {
+
+		int mFieldCount = parseValues();
+
+		if(mFieldCount == WEATHER_FIELD_COUNT) {
+			WeatherReading mReading = new WeatherReading(timestamp);
+			populate(mReading);
+			return mReading;
+		} else if(mFieldCount == TEMP_HUMIDITY_FIELD_COUNT) {
+			TempHumidityReading mReading = new TempHumidityReading(timestamp, values[0], values[1]);
+			mReading.setStationId(stationId);
+			return mReading;
+		} else {
+			// a reading of an unknown type
+			return null;
+		}
+	}
+
+	/**
+	 * parse the current line into an existing weather reading
+	 *
+	 * @param reading the reading to populate
+	 * @return true if the line is a weather reading, false if it is a reading of another type
+	 * @throws IOException if the line contains an invalid value
+	 */
+	public boolean getWeatherReading(WeatherReading reading) throws IOException {
+
+		if(parseValues() != WEATHER_FIELD_COUNT) {
+			return false;
+		}
+
+		reading.setTimestamp(timestamp);
+		populate(reading);
+
+		return true;
+	}
+
+	/**
+	 * read all of the remaining readings in the stream into a list
+	 *
+	 * @param readings the list to add the readings to
+	 * @return the number of readings added to the list
+	 * @throws IOException if something bad happens
+	 */
+	public int read(ReadingsList readings) throws IOException {
+		return read(Long.MIN_VALUE, Long.MAX_VALUE, readings);
+	}
+
+	/**
+	 * read the remaining readings in the stream that are in a time range into a list
+	 *
+	 * @param from the earliest timestamp in the range
+	 * @param to the timestamp to end the range at, readings at this time are not included
+	 * @param readings the list to add the readings to
+	 * @return the number of readings added to the list
+	 * @throws IOException if something bad happens
+	 */
+	public int read(long from, long to, ReadingsList readings) throws IOException {
+
+		int mCount = 0;
+		SensorReading mReading;
+
+		while(next()) {
+			if(timestamp >= from && timestamp < to) {
+				mReading = getReading();
+
+				if(mReading != null) {
+					readings.add(mReading);
+					mCount++;
+				}
+			}
+		}
+
+		return mCount;
+	}
+
+	/**
+	 * read all of the remaining weather readings in the stream into a series, readings of
+	 * other types are skipped. the readings are copied into the series so no reading objects
+	 * are created
+	 *
+	 * @param series the series to append the readings to
+	 * @return the number of readings appended to the series
+	 * @throws IOException if something bad happens
+	 * @throws IllegalArgumentException if the readings in the stream are not in timestamp order
+	 */
+	public int read(WeatherSeries series) throws IOException {
+
+		int mCount = 0;
+
+		while(next()) {
+			if(getWeatherReading(weatherReading)) {
+				series.append(weatherReading);
+				mCount++;
+			}
+		}
+
+		return mCount;
+	}
+
+	/**
+	 * @return the number of lines that have been read so far
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.io.Closeable#close()
+	 */
+	public void close() throws IOException {
+		input.close();
+	}
+
+	/**
+	 * parse a long value from ascii digits in a byte array
+	 *
+	 * @param bytes the array containing the value
+	 * @param start the index of the first byte of the value
+	 * @param end the index after the last byte of the value
+	 * @return the value
+	 * @throws NumberFormatException if the bytes are not a valid long value
+	 */
+	public static long parseLong(byte[] bytes, int start, int end) {
+
+		int mIndex = start;
+		boolean mNegative = false;
+
+		if(mIndex < end && (bytes[mIndex] == '-' || bytes[mIndex] == '+')) {
+			mNegative = bytes[mIndex] == '-';
+			mIndex++;
+		}
+
+		// values with more digits than this may overflow, and are parsed as a string
+		if(mIndex == end || end - mIndex > 18) {
+			return Long.parseLong(toString(bytes, start, end));
+		}
+
+		long mValue = 0;
+		int mDigit;
+
+		for(; mIndex < end; mIndex++) {
+			mDigit = bytes[mIndex] - '0';
+
+			if(mDigit < 0 || mDigit > 9) {
+				throw new NumberFormatException("For input string: \"" + toString(bytes, start, end) + "\"");
+			}
+
+			mValue = mValue * 10 + mDigit;
+		}
+
+		return mNegative ? -mValue : mValue;
+	}
+
+	/**
+	 * parse a float value from ascii digits in a byte array, the result is the same as
+	 * Float.parseFloat. decimal values such as those written by Float.toString are parsed in
+	 * place, other values such as NaN are parsed as a string
+	 *
+	 * @param bytes the array containing the value
+	 * @param start the index of the first byte of the value
+	 * @param end the index after the last byte of the value
+	 * @return the value
+	 * @throws NumberFormatException if the bytes are not a valid float value
+	 */
+	public static float parseFloat(byte[] bytes, int start, int end) {
+
+		int mIndex = start;
+		boolean mNegative = false;
+
+		if(mIndex < end && (bytes[mIndex] == '-' || bytes[mIndex] == '+')) {
+			mNegative = bytes[mIndex] == '-';
+			mIndex++;
+		}
+
+		long mMantissa = 0;
+		int mExponent = 0;
+		int mDigits = 0;
+		boolean mTruncated = false;
+		int mDigit;
+
+		// the integer part
+		int mFirst = mIndex;
+
+		while(mIndex < end && (mDigit = bytes[mIndex] - '0') >= 0 && mDigit <= 9) {
+			if(mDigits < 18) {
+				mMantissa = mMantissa * 10 + mDigit;
+				mDigits += mMantissa == 0 ? 0 : 1;
+			} else {
+				mExponent++;
+				mTruncated |= mDigit != 0;
+			}
+
+			mIndex++;
+		}
+
+		boolean mHasDigits = mIndex > mFirst;
+
+		// the fraction part
+		if(mIndex < end && bytes[mIndex] == '.') {
+			mIndex++;
+			mFirst = mIndex;
+
+			while(mIndex < end && (mDigit = bytes[mIndex] - '0') >= 0 && mDigit <= 9) {
+				if(mDigits < 18) {
+					mMantissa = mMantissa * 10 + mDigit;
+					mDigits += mMantissa == 0 ? 0 : 1;
+					mExponent--;
+				} else {
+					mTruncated |= mDigit != 0;
+				}
+
+				mIndex++;
+			}
+
+			mHasDigits |= mIndex > mFirst;
+		}
+
+		// the exponent, as written by Float.toString for very large and very small values
+		if(mHasDigits && mIndex < end && (bytes[mIndex] == 'E' || bytes[mIndex] == 'e')) {
+			mIndex++;
+
+			boolean mNegativeExponent = false;
+
+			if(mIndex < end && (bytes[mIndex] == '-' || bytes[mIndex] == '+')) {
+				mNegativeExponent = bytes[mIndex] == '-';
+				mIndex++;
+			}
+
+			mFirst = mIndex;
+			int mValue = 0;
+
+			while(mIndex < end && (mDigit = bytes[mIndex] - '0') >= 0 && mDigit <= 9 && mValue < 1000) {
+				mValue = mValue * 10 + mDigit;
+				mIndex++;
+			}
+
+			mHasDigits = mIndex > mFirst;
+			mExponent += mNegativeExponent ? -mValue : mValue;
+		}
+
+		if(mHasDigits == false || mIndex != end || mTruncated) {
+			// not a plain decimal value, such as NaN or Infinity
+			return Float.parseFloat(toString(bytes, start, end));
+		}
+
+		if(mMantissa == 0) {
+			return mNegative ? -0f : 0f;
+		}
+
+		if(mMantissa < MAX_EXACT_MANTISSA && mExponent >= -22 && mExponent <= 22) {
+
+			// the mantissa and the power of ten are both exact, so the result is correctly rounded
+			double mValue = mExponent >= 0 ? mMantissa * POWERS_OF_TEN[mExponent] : mMantissa / POWERS_OF_TEN[-mExponent];
+
+			// rounding to a float again is only wrong if the double lies exactly half way between
+			// two floats, or if the result is a subnormal float
+			if(mValue >= Float.MIN_NORMAL && (Double.doubleToRawLongBits(mValue) & 0x1fffffffL) != 0x10000000L) {
+				return (float) (mNegative ? -mValue : mValue);
+			}
+		}
+
+		return Float.parseFloat(toString(bytes, start, end));
+	}
+
+	/*
+	 * read more of the stream into the buffer, moving any unread bytes to the start of the
+	 * buffer and growing the buffer if it is full
+	 */
+	private void fill() throws IOException {
+
+		if(position > 0) {
+			System.arraycopy(buffer, position, buffer, 0, limit - position);
+			bufferOffset += position;
+			limit -= position;
+			position = 0;
+		}
+
+		if(limit == buffer.length) {
+			byte[] mBuffer = new byte[buffer.length * 2];
+			System.arraycopy(buffer, 0, mBuffer, 0, limit);
+			buffer = mBuffer;
+		}
+
+		int mCount = input.read(buffer, limit, buffer.length - limit);
+
+		if(mCount == -1) {
+			endOfStream = true;
+		} else {
+			limit += mCount;
+		}
+	}
+
+	/*
+	 * parse the fields after the timestamp in the current line, returning the number of fields
+	 * including the timestamp. an empty field at the end of the line, left by the tab after
+	 * the last value, is not counted and nor is the station field
+	 */
+	private int parseValues() throws IOException {
+
+		int mStart = indexOfTab(lineStart);
+		int mFieldCount = 1;
+		int mEnd;
+
+		stationId = SensorReading.LOCAL_STATION;
+
+		while(mStart < lineEnd) {
+			// move past the tab
+			mStart++;
+
+			if(mStart == lineEnd) {
+				break;
+			}
+
+			mEnd = indexOfTab(mStart);
+
+			if(buffer[mStart] == ReadingsFormatter.STATION_PREFIX) {
+
+				// the station field is the last field in the line
+				if(mEnd + 1 < lineEnd) {
+					return -1;
+				}
+
+				try {
+					stationId = parseLong(buffer, mStart + 1, mEnd);
+				} catch (NumberFormatException e) {
+					throw new IOException("invalid station in line '" + getLine() + "'", e);
+				}
+
+				break;
+			}
+
+			if(mFieldCount > values.length) {
+				// more fields than any known reading type
+				return -1;
+			}
+
+			try {
+				values[mFieldCount - 1] = parseFloat(buffer, mStart, mEnd);
+			} catch (NumberFormatException e) {
+				throw new IOException("invalid reading in line '" + getLine() + "'", e);
+			}
+
+			mFieldCount++;
+			mStart = mEnd;
+		}
+
+		return mFieldCount;
+	}
+
+	/*
+	 * populate a weather reading from the parsed values, in the order written by the toString method,
+	 * reporting a value that the reading rejects as an invalid line
+	 */
+	private void populate(WeatherReading reading) throws IOException {
+		try {
+			reading.setStationId(stationId);
+			reading.setBarometricTrend((int) values[0]);
+			reading.setBarometer(values[1]);
+			reading.setTemperature(values[2]);
+			reading.setHumidity((int) values[3]);
+			reading.setWindSpeed(values[4]);
+			reading.setAverageWindSpeed(values[5]);
+			reading.setWindDirection((int) values[6]);
+			reading.setRainRate(values[7]);
+			reading.setRainToday(values[8]);
+		} catch (IllegalArgumentException e) {
+			throw new IOException("invalid reading in line '" + getLine() + "'", e);
+		}
+	}
+
+	/*
+	 * find the next tab in the current line, returning the end of the line if there is no tab
+	 */
+	private int indexOfTab(int start) {
+
+		while(start < lineEnd && buffer[start] != '\t') {
+			start++;
+		}
+
+		return start;
+	}
+
+	/*
+	 * get the current line as a string, for use in error messages
+	 */
+	private String getLine() {
+		return toString(buffer, lineStart, lineEnd);
+	}
+
+	private static String toString(byte[] bytes, int start, int end) {
+		try {
+			return new String(bytes, start, end - start, "US-ASCII");
+		} catch (UnsupportedEncodingException e) {
+			// every java platform supports ascii
+			throw new IllegalStateException(e);
+		}
+	}
+}
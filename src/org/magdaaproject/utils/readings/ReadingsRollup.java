@@ -0,0 +1,275 @@
+/*
+ * Copyright (C) 2013 The MaGDAA Project
+ *
+ * This file is part of the MaGDAA Library Software
+ *
+ * MaGDAA Library Software is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This source code is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this source code; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.magdaaproject.utils.readings;
+
+import org.magdaaproject.utils.TimeUtils;
+
+/**
+ * a class which rolls up a stream of sensor readings into one reading per fixed time
+ * interval, for example one reading per minute or per hour, adding the rolled up readings
+ * to a ReadingsList as each interval is completed
+ *
+ * the rolled up reading for an interval has the timestamp of the start of the interval.
+ * most fields are averaged, the wind direction is averaged as a vector so that readings
+ * either side of north average to north, the barometric trend is the latest trend, and
+ * the rain today field, which is already a running total for the day, is the latest
+ * total so that it includes all of the rain that fell during the interval
+ *
+ * the readings must be supplied in timestamp order, any reading older than the interval
+ * that is being rolled up is ignored. a rollup only averages readings from one station,
+ * the station of the first reading added, and the rolled up readings have that station.
+ * any reading from another station is ignored, so use a separate rollup for each station
+ */
+public class ReadingsRollup {
+
+	/*
+	 * private class level variables
+	 */
+	private long interval;
+	private ReadingsList output;
+
+	private long intervalStart = Long.MIN_VALUE;
+	private int ignoredCount = 0;
+
+	private long stationId = SensorReading.LOCAL_STATION;
+	private boolean hasStation = false;
+
+	// weather reading accumulators
+	private int weatherCount;
+	private double barometer;
+	private double temperature;
+	private double humidity;
+	private double windSpeed;
+	private double averageWindSpeed;
+	private double windNorth;
+	private double windEast;
+	private int windCount;
+	private double rainRate;
+	private int barometricTrend;
+	private float rainToday;
+
+	// temperature and humidity reading accumulators
+	private int tempHumidityCount;
+	private double temp;
+	private double relativeHumidity;
+
+	/**
+	 * construct a new rollup which produces one reading per minute
+	 *
+	 * @param output the list to add the rolled up readings to
+	 */
+	public ReadingsRollup(ReadingsList output) {
+		this(TimeUtils.ONE_MINUTE_IN_MILLISECONDS, output);
+	}
+
+	/**
+	 * construct a new rollup
+	 *
+	 * @param interval the length of the interval in milliseconds
+	 * @param output the list to add the rolled up readings to
+	 * @throws IllegalArgumentException if the interval is not positive or the output list is missing
+	 */
+	public ReadingsRollup(long interval, ReadingsList output) {
+
+		if(interval <= 0) {
+			throw new IllegalArgumentException("the interval must be greater than zero");
+		}
+
+		if(output == null) {
+			throw new IllegalArgumentException("the output parameter is required");
+		}
+
+		this.interval = interval;
+		this.output = output;
+	}
+
+	/**
+	 * add a reading to the rollup, completing the current interval if the reading belongs
+	 * to a later interval
+	 *
+	 * @param reading the reading to add
+	 */
+	public void add(SensorReading reading) {
+
+		if(hasStation == false) {
+			stationId = reading.getStationId();
+			hasStation = true;
+		} else if(reading.getStationId() != stationId) {
+			// averaging readings from different stations would mix their values
+			ignoredCount++;
+			return;
+		}
+
+		long mIntervalStart = getIntervalStart(reading.getTimestamp());
+
+		if(mIntervalStart < intervalStart) {
+			// the interval for this reading has already been completed
+			ignoredCount++;
+			return;
+		}
+
+		if(mIntervalStart > intervalStart) {
+			flush();
+			intervalStart = mIntervalStart;
+		}
+
+		if(reading instanceof WeatherReading) {
+			addWeatherReading((WeatherReading) reading);
+		} else if(reading instanceof TempHumidityReading) {
+			addTempHumidityReading((TempHumidityReading) reading);
+		} else {
+			ignoredCount++;
+		}
+	}
+
+	/**
+	 * add the rolled up readings for the current interval to the output list, even though
+	 * the interval may not be complete. further readings for the same interval start
+	 * a new rolled up reading
+	 */
+	public void flush() {
+
+		if(weatherCount > 0) {
+			output.add(buildWeatherReading());
+		}
+
+		if(tempHumidityCount > 0) {
+			TempHumidityReading mReading = new TempHumidityReading(
+					intervalStart,
+					(float) (temp / tempHumidityCount),
+					(float) (relativeHumidity / tempHumidityCount));
+			mReading.setStationId(stationId);
+			output.add(mReading);
+		}
+
+		reset();
+	}
+
+	/**
+	 * @return the length of the interval in milliseconds
+	 */
+	public long getInterval() {
+		return interval;
+	}
+
+	/**
+	 * @return the station of the readings being rolled up, or LOCAL_STATION if no readings have been added
+	 */
+	public long getStationId() {
+		return stationId;
+	}
+
+	/**
+	 * @return the number of readings that were ignored because they were out of order, of an unsupported type or from another station
+	 */
+	public int getIgnoredCount() {
+		return ignoredCount;
+	}
+
+	/*
+	 * determine the start of the interval containing the timestamp
+	 */
+	private long getIntervalStart(long timestamp) {
+
+		long mRemainder = timestamp % interval;
+
+		if(mRemainder < 0) {
+			mRemainder += interval;
+		}
+
+		return timestamp - mRemainder;
+	}
+
+	private void addWeatherReading(WeatherReading reading) {
+
+		barometer += reading.getBarometer();
+		temperature += reading.getTemperature();
+		humidity += reading.getHumidity();
+		windSpeed += reading.getWindSpeed();
+		averageWindSpeed += reading.getAverageWindSpeed();
+		rainRate += reading.getRainRate();
+
+		// a wind direction of zero indicates that there is no wind data
+		if(reading.getWindDirection() != 0) {
+			double mRadians = Math.toRadians(reading.getWindDirection());
+			windNorth += Math.cos(mRadians);
+			windEast += Math.sin(mRadians);
+			windCount++;
+		}
+
+		barometricTrend = reading.getBarometricTrend();
+		rainToday = reading.getRainToday();
+
+		weatherCount++;
+	}
+
+	private void addTempHumidityReading(TempHumidityReading reading) {
+		temp += reading.getTemp();
+		relativeHumidity += reading.getHumidity();
+		tempHumidityCount++;
+	}
+
+	private WeatherReading buildWeatherReading() {
+
+		WeatherReading mReading = new WeatherReading(intervalStart);
+
+		mReading.setStationId(stationId);
+		mReading.setBarometer((float) (barometer / weatherCount));
+		mReading.setTemperature((float) (temperature / weatherCount));
+		mReading.setHumidity((int) Math.round(humidity / weatherCount));
+		mReading.setWindSpeed((float) (windSpeed / weatherCount));
+		mReading.setAverageWindSpeed((float) (averageWindSpeed / weatherCount));
+		mReading.setRainRate((float) (rainRate / weatherCount));
+		mReading.setBarometricTrend(barometricTrend);
+		mReading.setRainToday(rainToday);
+
+		if(windCount > 0) {
+			int mDirection = (int) Math.round(Math.toDegrees(Math.atan2(windEast, windNorth)));
+
+			// map the direction into the range 1 to 360, as zero indicates no data
+			if(mDirection <= 0) {
+				mDirection += 360;
+			}
+
+			mReading.setWindDirection(mDirection);
+		}
+
+		return mReading;
+	}
+
+	private void reset() {
+		weatherCount = 0;
+		barometer = 0;
+		temperature = 0;
+		humidity = 0;
+		windSpeed = 0;
+		averageWindSpeed = 0;
+		windNorth = 0;
+		windEast = 0;
+		windCount = 0;
+		rainRate = 0;
+		barometricTrend = 0;
+		rainToday = 0;
+
+		tempHumidityCount = 0;
+		temp = 0;
+		relativeHumidity = 0;
+	}
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) 2013 The MaGDAA Project
+ *
+ * This file is part of the MaGDAA Library Software
+ *
+ * MaGDAA Library Software is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This source code is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this source code; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.magdaaproject.utils.readings;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * a utility class which sorts and merges collections of sensor readings of any type
+ * by timestamp
+ *
+ * timestamps are always compared as primitive longs. the sorts are stable so readings
+ * with the same timestamp keep their original order
+ */
+public class ReadingsSorter {
+
+	/**
+	 * a comparator which orders readings of any type by timestamp
+	 */
+	public static final Comparator<SensorReading> TIMESTAMP_ORDER = new Comparator<SensorReading>() {
+		public int compare(SensorReading lhs, SensorReading rhs) {
+			return ReadingsSorter.compare(lhs.getTimestamp(), rhs.getTimestamp());
+		}
+	};
+
+	/**
+	 * compare two timestamps without the risk of overflow
+	 *
+	 * @param lhs the first timestamp
+	 * @param rhs the second timestamp
+	 * @return a negative number, zero or a positive number if the first timestamp is before, equal to or after the second
+	 */
+	public static int compare(long lhs, long rhs) {
+		return lhs < rhs ? -1 : (lhs == rhs ? 0 : 1);
+	}
+
+	/**
+	 * sort an array of readings by timestamp
+	 *
+	 * @param readings the readings to sort
+	 */
+	public static void sort(SensorReading[] readings) {
+		Arrays.sort(readings, TIMESTAMP_ORDER);
+	}
+
+	/**
+	 * sort a list of readings by timestamp in place
+	 *
+	 * @param readings the list to sort
+	 */
+	public static void sort(ReadingsList readings) {
+
+		if(readings.isTimeOrdered()) {
+			return;
+		}
+
+		SensorReading[] mReadings = readings.toArray(new SensorReading[readings.size()]);
+		sort(mReadings);
+
+		// adding the readings back in order restores the time index of the list
+		readings.clear();
+
+		for(SensorReading mReading : mReadings) {
+			readings.add(mReading);
+		}
+	}
+
+	/**
+	 * merge lists of readings that are each already in timestamp order, such as the readings
+	 * from several stations, into a single list in timestamp order. readings with the same
+	 * timestamp are taken from the lists in the order the lists are supplied
+	 *
+	 * @param inputs the lists to merge
+	 * @param output the list to add the merged readings to
+	 * @return the number of readings added to the output list
+	 * @throws IllegalArgumentException if one of the lists is not in timestamp order
+	 */
+	public static int merge(List<ReadingsList> inputs, ReadingsList output) {
+		return merge(inputs.toArray(new ReadingsList[inputs.size()]), output);
+	}
+
+	/**
+	 * merge lists of readings that are each already in timestamp order, such as the readings
+	 * from several stations, into a single list in timestamp order. readings with the same
+	 * timestamp are taken from the lists in the order the lists are supplied
+	 *
+	 * @param inputs the lists to merge
+	 * @param output the list to add the merged readings to
+	 * @return the number of readings added to the output list
+	 * @throws IllegalArgumentException if one of the lists is not in timestamp order
+	 */
+	public static int merge(ReadingsList[] inputs, ReadingsList output) {
+
+		// a binary heap of the lists with readings remaining, keyed by the timestamp of the next reading
+		int[] mHeap = new int[inputs.length];
+		long[] mKeys = new long[inputs.length];
+		int[] mPositions = new int[inputs.length];
+		int mHeapSize = 0;
+
+		for(int i = 0; i < inputs.length; i++) {
+
+			if(inputs[i].isTimeOrdered() == false) {
+				throw new IllegalArgumentException("list " + i + " is not in timestamp order");
+			}
+
+			if(inputs[i].size() > 0) {
+				mKeys[i] = inputs[i].getFirst().getTimestamp();
+				mHeap[mHeapSize] = i;
+				siftUp(mHeap, mKeys, mHeapSize);
+				mHeapSize++;
+			}
+		}
+
+		int mCount = 0;
+		int mList;
+		ReadingsList mInput;
+
+		while(mHeapSize > 0) {
+
+			// take the next reading from the list at the top of the heap
+			mList = mHeap[0];
+			mInput = inputs[mList];
+
+			output.add(mInput.get(mPositions[mList]));
+			mPositions[mList]++;
+			mCount++;
+
+			if(mPositions[mList] < mInput.size()) {
+				mKeys[mList] = mInput.get(mPositions[mList]).getTimestamp();
+			} else {
+				mHeapSize--;
+				mHeap[0] = mHeap[mHeapSize];
+			}
+
+			siftDown(mHeap, mKeys, mHeapSize);
+		}
+
+		return mCount;
+	}
+
+	/*
+	 * determine if the list at heap position a should be above the list at heap position b,
+	 * breaking ties by the list index so that the merge is stable
+	 */
+	private static boolean isBefore(int[] heap, long[] keys, int a, int b) {
+		long mA = keys[heap[a]];
+		long mB = keys[heap[b]];
+
+		return mA < mB || (mA == mB && heap[a] < heap[b]);
+	}
+
+	private static void siftUp(int[] heap, long[] keys, int index) {
+
+		int mParent;
+		int mSwap;
+
+		while(index > 0) {
+			mParent = (index - 1) >>> 1;
+
+			if(isBefore(heap, keys, index, mParent) == false) {
+				break;
+			}
+
+			mSwap = heap[index];
+			heap[index] = heap[mParent];
+			heap[mParent] = mSwap;
+			index = mParent;
+		}
+	}
+
+	private static void siftDown(int[] heap, long[] keys, int size) {
+
+		int mIndex = 0;
+		int mChild;
+		int mSwap;
+
+		while((mChild = mIndex * 2 + 1) < size) {
+
+			if(mChild + 1 < size && isBefore(heap, keys, mChild + 1, mChild)) {
+				mChild++;
+			}
+
+			if(isBefore(heap, keys, mChild, mIndex) == false) {
+				break;
+			}
+
+			mSwap = heap[mIndex];
+			heap[mIndex] = heap[mChild];
+			heap[mChild] = mSwap;
+			mIndex = mChild;
+		}
+	}
+}
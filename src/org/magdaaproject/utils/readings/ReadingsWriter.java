@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2013 The MaGDAA Project
+ *
+ * This file is part of the MaGDAA Library Software
+ *
+ * MaGDAA Library Software is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This source code is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this source code; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.magdaaproject.utils.readings;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * a class used to stream sensor readings to an output stream, one reading per line, using
+ * the same tab separated format as the toString methods of the reading classes
+ *
+ * each reading is formatted into a reusable buffer by a ReadingsFormatter and written
+ * to a buffered stream, so the readings never have to be assembled into strings. float
+ * values can optionally be written with a fixed number of decimal places, which avoids
+ * the cost of Float.toString
+ */
+public class ReadingsWriter implements Closeable {
+
+	/*
+	 * public class level constants
+	 */
+
+	/**
+	 * the size of the buffer used when writing readings
+	 */
+	public static final int BUFFER_SIZE = 8192;
+
+	/*
+	 * private class level variables
+	 */
+	private OutputStream output;
+	private ReadingsFormatter formatter;
+	private int count = 0;
+	private long position = 0;
+	private ReadingsFileIndex.Entry indexEntry;
+
+	/**
+	 * construct a new readings writer which writes float values the same way as Float.toString
+	 *
+	 * @param output the output stream to write the readings to
+	 * @throws IOException if the output stream cannot be used
+	 */
+	public ReadingsWriter(OutputStream output) throws IOException {
+		this(output, ReadingsFormatter.FULL_PRECISION);
+	}
+
+	/**
+	 * construct a new readings writer
+	 *
+	 * @param output the output stream to write the readings to
+	 * @param precision the number of decimal places for float values, or ReadingsFormatter.FULL_PRECISION
+	 * @throws IOException if the output stream cannot be used
+	 * @throws IllegalArgumentException if the precision is invalid
+	 */
+	public ReadingsWriter(OutputStream output, int precision) throws IOException {
+
+		if(output == null) {
+			throw new IllegalArgumentException("the output parameter is required");
+		}
+
+		this.formatter = new ReadingsFormatter(precision);
+		this.output = new BufferedOutputStream(output, BUFFER_SIZE);
+	}
+
+	/**
+	 * write a single reading followed by a new line
+	 *
+	 * @param reading the reading to write
+	 * @throws IOException if something bad happens
+	 */
+	public void write(SensorReading reading) throws IOException {
+
+		if(indexEntry != null) {
+			indexEntry.add(reading.getTimestamp(), position);
+		}
+
+		int mLength = formatter.format(reading);
+
+		output.write(formatter.getBuffer(), 0, mLength);
+		position += mLength;
+		count++;
+	}
+
+	/**
+	 * write all of the readings in the list
+	 *
+	 * @param readings the list of readings to write
+	 * @throws IOException if something bad happens
+	 */
+	public void write(ReadingsList readings) throws IOException {
+		for(int i = 0; i < readings.size(); i++) {
+			write(readings.get(i));
+		}
+	}
+
+	/**
+	 * build an index entry for the readings as they are written, for adding to a ReadingsFileIndex
+	 * once the file is complete
+	 *
+	 * @param entry the entry to build, or null to stop building an entry
+	 */
+	public void setIndexEntry(ReadingsFileIndex.Entry entry) {
+		this.indexEntry = entry;
+	}
+
+	/**
+	 * @return the number of bytes written so far
+	 */
+	public long getPosition() {
+		return position;
+	}
+
+	/**
+	 * @return the number of readings written so far
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * flush any buffered readings to the output stream
+	 *
+	 * @throws IOException if something bad happens
+	 */
+	public void flush() throws IOException {
+		output.flush();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.io.Closeable#close()
+	 */
+	public void close() throws IOException {
+		output.close();
+	}
+}
@@ -0,0 +1,328 @@
+/*
+ * Copyright (C) 2013 The MaGDAA Project
+ *
+ * This file is part of the MaGDAA Library Software
+ *
+ * MaGDAA Library Software is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This source code is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this source code; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.magdaaproject.utils.readings;
+
+/**
+ * a class which maintains the minimum, maximum, mean and variance of a first in first out
+ * window of values, such as the values of one field of the readings in a ReadingsList
+ *
+ * adding a value to the window and removing the oldest value are amortised constant time
+ * operations. the minimum and maximum are tracked using monotonic queues, and the mean
+ * and variance are tracked using Welford's algorithm
+ *
+ * values that are NaN or infinite, such as a missing field, hold their place in the
+ * window but are left out of the statistics, so they cannot corrupt the running mean
+ */
+public class RollingStatistics {
+
+	/*
+	 * private class level variables
+	 */
+	private ValueQueue window = new ValueQueue();
+	private ValueQueue minimums = new ValueQueue();
+	private ValueQueue maximums = new ValueQueue();
+
+	private long sequence = 0;
+	private int nonFiniteCount = 0;
+
+	private double mean = 0;
+	private double sumOfSquares = 0;
+
+	// the list the statistics belong to, which may need to bring them up to date before they are read
+	private ReadingsList source;
+
+	/**
+	 * construct a new empty window
+	 */
+	public RollingStatistics() {
+		super();
+	}
+
+	/*
+	 * construct a new empty window that is maintained by a list
+	 */
+	RollingStatistics(ReadingsList source) {
+		this.source = source;
+	}
+
+	/**
+	 * add a value to the end of the window
+	 *
+	 * @param value the value to add
+	 */
+	public void add(float value) {
+
+		if(isFinite(value) == false) {
+			window.addLast(sequence, value);
+			sequence++;
+			nonFiniteCount++;
+			return;
+		}
+
+		// keep the queue of candidate minimums in increasing order
+		while(minimums.size > 0 && minimums.lastValue() >= value) {
+			minimums.removeLast();
+		}
+		minimums.addLast(sequence, value);
+
+		// keep the queue of candidate maximums in decreasing order
+		while(maximums.size > 0 && maximums.lastValue() <= value) {
+			maximums.removeLast();
+		}
+		maximums.addLast(sequence, value);
+
+		window.addLast(sequence, value);
+		sequence++;
+
+		// update the mean and variance
+		double mDelta = value - mean;
+		mean += mDelta / getFiniteCount();
+		sumOfSquares += mDelta * (value - mean);
+	}
+
+	/**
+	 * remove the oldest value from the window
+	 *
+	 * @throws IllegalStateException if the window is empty
+	 */
+	public void removeOldest() {
+
+		if(window.size == 0) {
+			throw new IllegalStateException("the window is empty");
+		}
+
+		long mSequence = window.firstSequence();
+		float mValue = window.firstValue();
+		window.removeFirst();
+
+		if(isFinite(mValue) == false) {
+			nonFiniteCount--;
+			return;
+		}
+
+		if(minimums.firstSequence() == mSequence) {
+			minimums.removeFirst();
+		}
+
+		if(maximums.firstSequence() == mSequence) {
+			maximums.removeFirst();
+		}
+
+		// reverse the update of the mean and variance
+		if(getFiniteCount() == 0) {
+			mean = 0;
+			sumOfSquares = 0;
+		} else {
+			double mDelta = mValue - mean;
+			mean -= mDelta / getFiniteCount();
+			sumOfSquares -= mDelta * (mValue - mean);
+
+			if(sumOfSquares < 0) {
+				sumOfSquares = 0;
+			}
+		}
+	}
+
+	/**
+	 * remove all of the values from the window
+	 */
+	public void clear() {
+		window.clear();
+		minimums.clear();
+		maximums.clear();
+		nonFiniteCount = 0;
+		mean = 0;
+		sumOfSquares = 0;
+	}
+
+	/**
+	 * @return the number of values in the window, including values that are not finite
+	 */
+	public int getCount() {
+		update();
+		return window.size;
+	}
+
+	/**
+	 * @return the number of values in the window that are NaN or infinite, and are left out of the statistics
+	 */
+	public int getNonFiniteCount() {
+		update();
+		return nonFiniteCount;
+	}
+
+	/**
+	 * @return the minimum value in the window, or NaN if the window has no finite values
+	 */
+	public float getMinimum() {
+		update();
+
+		if(getFiniteCount() == 0) {
+			return Float.NaN;
+		}
+
+		return minimums.firstValue();
+	}
+
+	/**
+	 * @return the maximum value in the window, or NaN if the window has no finite values
+	 */
+	public float getMaximum() {
+		update();
+
+		if(getFiniteCount() == 0) {
+			return Float.NaN;
+		}
+
+		return maximums.firstValue();
+	}
+
+	/**
+	 * @return the mean of the values in the window, or NaN if the window has no finite values
+	 */
+	public float getMean() {
+		update();
+
+		if(getFiniteCount() == 0) {
+			return Float.NaN;
+		}
+
+		return (float) mean;
+	}
+
+	/**
+	 * @return the population variance of the values in the window, or NaN if the window has no finite values
+	 */
+	public float getVariance() {
+		update();
+
+		if(getFiniteCount() == 0) {
+			return Float.NaN;
+		}
+
+		return (float) (sumOfSquares / getFiniteCount());
+	}
+
+	/**
+	 * @return the population standard deviation of the values in the window, or NaN if the window has no finite values
+	 */
+	public float getStandardDeviation() {
+		update();
+
+		if(getFiniteCount() == 0) {
+			return Float.NaN;
+		}
+
+		return (float) Math.sqrt(sumOfSquares / getFiniteCount());
+	}
+
+	/*
+	 * the number of values included in the statistics
+	 */
+	private int getFiniteCount() {
+		return window.size - nonFiniteCount;
+	}
+
+	private static boolean isFinite(float value) {
+		return Float.isNaN(value) == false && Float.isInfinite(value) == false;
+	}
+
+	/*
+	 * bring the statistics up to date if the list they belong to has been changed
+	 */
+	private void update() {
+		if(source != null) {
+			source.updateStatistics();
+		}
+	}
+
+	/*
+	 * a growable double ended queue of sequence numbers and values held in primitive arrays
+	 */
+	private static class ValueQueue {
+
+		private long[] sequences = new long[16];
+		private float[] values = new float[16];
+		private int head = 0;
+		private int size = 0;
+
+		private void addLast(long sequence, float value) {
+
+			if(size == values.length) {
+				grow();
+			}
+
+			int mSlot = slot(size);
+			sequences[mSlot] = sequence;
+			values[mSlot] = value;
+			size++;
+		}
+
+		private void removeFirst() {
+			head = slot(1);
+			size--;
+		}
+
+		private void removeLast() {
+			size--;
+		}
+
+		private long firstSequence() {
+			return sequences[head];
+		}
+
+		private float firstValue() {
+			return values[head];
+		}
+
+		private float lastValue() {
+			return values[slot(size - 1)];
+		}
+
+		private void clear() {
+			head = 0;
+			size = 0;
+		}
+
+		private int slot(int index) {
+			int mSlot = head + index;
+
+			if(mSlot >= values.length) {
+				mSlot -= values.length;
+			}
+
+			return mSlot;
+		}
+
+		private void grow() {
+			long[] mSequences = new long[values.length * 2];
+			float[] mValues = new float[values.length * 2];
+
+			for(int i = 0; i < size; i++) {
+				mSequences[i] = sequences[slot(i)];
+				mValues[i] = values[slot(i)];
+			}
+
+			sequences = mSequences;
+			values = mValues;
+			head = 0;
+		}
+	}
+}
@@ -24,10 +24,20 @@ package org.magdaaproject.utils.readings;
  */
 public class SensorReading {
 	
+	/*
+	 * public class level constants
+	 */
+	
+	/**
+	 * the station identifier of readings taken by the local station, the default for new readings
+	 */
+	public static final long LOCAL_STATION = 0;
+	
 	/*
 	 * private class level variables
 	 */
 	private long timestamp;
+	private long stationId = LOCAL_STATION;
 	
 	/**
 	 * instantiate a new SensorReading object using the current time as the timestamp
@@ -58,4 +68,19 @@ public class SensorReading {
 	public void setTimestamp(long timestamp) {
 		this.timestamp = timestamp;
 	}
+	
+	/**
+	 * @return the identifier of the station or device that took this sensor reading
+	 */
+	public long getStationId() {
+		return stationId;
+	}
+	
+	/**
+	 * set the identifier of the station or device that took this sensor reading
+	 * @param stationId the identifier of the station or device that took this sensor reading
+	 */
+	public void setStationId(long stationId) {
+		this.stationId = stationId;
+	}
 }
@@ -0,0 +1,295 @@
+/*
+ * Copyright (C) 2013 The MaGDAA Project
+ *
+ * This file is part of the MaGDAA Library Software
+ *
+ * MaGDAA Library Software is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This source code is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this source code; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.magdaaproject.utils.readings;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * a store of the readings received from many stations, with a separate bounded list of
+ * readings for each station
+ *
+ * each station has its own shard holding a ReadingsList and its own lock, so readings
+ * from different stations can be added from different threads at the same time without
+ * waiting for each other. the shards are found by a binary search of a sorted array of
+ * the station identifiers, without locking or boxing the identifier, and are created the
+ * first time a reading from a station is added by replacing the arrays with larger copies
+ */
+public class ShardedReadingsStore {
+
+	/*
+	 * private class level variables
+	 */
+	private int limit;
+	private volatile ShardTable shards = new ShardTable(new long[0], new Shard[0]);
+
+	/**
+	 * construct a new store which holds the default number of readings of a ReadingsList for each station
+	 */
+	public ShardedReadingsStore() {
+		this(ReadingsList.DEFAULT_LIMIT);
+	}
+
+	/**
+	 * construct a new store
+	 *
+	 * @param limit the maximum number of readings held for each station
+	 * @throws IllegalArgumentException if the limit is less than one
+	 */
+	public ShardedReadingsStore(int limit) {
+
+		if(limit < 1) {
+			throw new IllegalArgumentException("the limit must be at least 1");
+		}
+
+		this.limit = limit;
+	}
+
+	/**
+	 * add a reading to the shard for the station that took it, evicting the oldest reading
+	 * from the station if its shard is full
+	 *
+	 * @param reading the reading to add
+	 */
+	public void add(SensorReading reading) {
+
+		Shard mShard = getShard(reading.getStationId(), true);
+
+		synchronized(mShard) {
+			mShard.readings.add(reading);
+		}
+	}
+
+	/**
+	 * add a batch of readings, taking the lock for a shard once for each run of readings
+	 * from the same station
+	 *
+	 * @param readings the readings to add
+	 */
+	public void addAll(List<? extends SensorReading> readings) {
+
+		int mIndex = 0;
+		int mSize = readings.size();
+		long mStation;
+		Shard mShard;
+
+		while(mIndex < mSize) {
+			mStation = readings.get(mIndex).getStationId();
+			mShard = getShard(mStation, true);
+
+			synchronized(mShard) {
+				while(mIndex < mSize && readings.get(mIndex).getStationId() == mStation) {
+					mShard.readings.add(readings.get(mIndex));
+					mIndex++;
+				}
+			}
+		}
+	}
+
+	/**
+	 * copy the readings from a station into a list
+	 *
+	 * @param stationId the identifier of the station
+	 * @param output the list to add the readings to
+	 * @return the number of the copied readings that are in the list, fewer than were copied if the list evicted some to stay within its limit
+	 */
+	public int getReadings(long stationId, ReadingsList output) {
+
+		Shard mShard = getShard(stationId, false);
+
+		if(mShard == null) {
+			return 0;
+		}
+
+		int mCount;
+
+		synchronized(mShard) {
+			output.addAll(mShard.readings);
+			mCount = mShard.readings.size();
+		}
+
+		return Math.min(mCount, output.getLimit());
+	}
+
+	/**
+	 * copy the readings from all of the stations into a list in timestamp order
+	 *
+	 * @param output the list to add the readings to
+	 * @return the number of the copied readings that are in the list, fewer than were copied if the list evicted some to stay within its limit
+	 */
+	public int getAllReadings(ReadingsList output) {
+
+		// copy each shard under its own lock, then merge the copies without holding any lock
+		Shard[] mShards = shards.shards;
+		List<ReadingsList> mCopies = new ArrayList<ReadingsList>(mShards.length);
+
+		for(Shard mShard : mShards) {
+			synchronized(mShard) {
+				ReadingsList mCopy = new ReadingsList(limit);
+				mCopy.addAll(mShard.readings);
+				mCopies.add(mCopy);
+			}
+		}
+
+		for(ReadingsList mCopy : mCopies) {
+			ReadingsSorter.sort(mCopy);
+		}
+
+		return Math.min(ReadingsSorter.merge(mCopies, output), output.getLimit());
+	}
+
+	/**
+	 * get the most recent reading from a station
+	 *
+	 * @param stationId the identifier of the station
+	 * @return the most recent reading, or null if there are no readings from the station
+	 */
+	public SensorReading getLast(long stationId) {
+
+		Shard mShard = getShard(stationId, false);
+
+		if(mShard == null) {
+			return null;
+		}
+
+		synchronized(mShard) {
+			return mShard.readings.isEmpty() ? null : mShard.readings.getLast();
+		}
+	}
+
+	/**
+	 * remove readings older than the minimum age from all of the stations, locking one shard at a time
+	 *
+	 * @param minAge the minimum age for readings to remain in the store
+	 */
+	public void removeOld(long minAge) {
+		for(Shard mShard : shards.shards) {
+			synchronized(mShard) {
+				mShard.readings.removeOld(minAge);
+			}
+		}
+	}
+
+	/**
+	 * get the number of readings from a station
+	 *
+	 * @param stationId the identifier of the station
+	 * @return the number of readings from the station
+	 */
+	public int size(long stationId) {
+
+		Shard mShard = getShard(stationId, false);
+
+		if(mShard == null) {
+			return 0;
+		}
+
+		synchronized(mShard) {
+			return mShard.readings.size();
+		}
+	}
+
+	/**
+	 * @return the identifiers of the stations that readings have been received from
+	 */
+	public long[] getStationIds() {
+		return shards.stationIds.clone();
+	}
+
+	/**
+	 * @return the maximum number of readings held for each station
+	 */
+	public int getLimit() {
+		return limit;
+	}
+
+	/*
+	 * get the shard for a station, optionally creating it if it does not exist
+	 */
+	private Shard getShard(long stationId, boolean create) {
+
+		ShardTable mTable = shards;
+		int mIndex = Arrays.binarySearch(mTable.stationIds, stationId);
+
+		if(mIndex >= 0) {
+			return mTable.shards[mIndex];
+		}
+
+		return create ? createShard(stationId) : null;
+	}
+
+	/*
+	 * add the shard for a new station, unless another thread has already added it
+	 */
+	private synchronized Shard createShard(long stationId) {
+
+		ShardTable mTable = shards;
+		int mIndex = Arrays.binarySearch(mTable.stationIds, stationId);
+
+		if(mIndex >= 0) {
+			return mTable.shards[mIndex];
+		}
+
+		// insert the new station keeping the identifiers sorted
+		mIndex = -(mIndex + 1);
+
+		int mLength = mTable.stationIds.length;
+		long[] mStationIds = new long[mLength + 1];
+		Shard[] mShards = new Shard[mLength + 1];
+
+		System.arraycopy(mTable.stationIds, 0, mStationIds, 0, mIndex);
+		System.arraycopy(mTable.shards, 0, mShards, 0, mIndex);
+		mStationIds[mIndex] = stationId;
+		mShards[mIndex] = new Shard(limit);
+		System.arraycopy(mTable.stationIds, mIndex, mStationIds, mIndex + 1, mLength - mIndex);
+		System.arraycopy(mTable.shards, mIndex, mShards, mIndex + 1, mLength - mIndex);
+
+		shards = new ShardTable(mStationIds, mShards);
+
+		return mShards[mIndex];
+	}
+
+	/*
+	 * the sorted station identifiers and their shards, never modified once published
+	 */
+	private static class ShardTable {
+
+		private final long[] stationIds;
+		private final Shard[] shards;
+
+		private ShardTable(long[] stationIds, Shard[] shards) {
+			this.stationIds = stationIds;
+			this.shards = shards;
+		}
+	}
+
+	/*
+	 * the readings from a single station, the shard itself is used as the lock
+	 */
+	private static class Shard {
+
+		private ReadingsList readings;
+
+		private Shard(int limit) {
+			this.readings = new ReadingsList(limit);
+		}
+	}
+}
@@ -95,9 +95,9 @@ public class TempHumidityReading extends SensorReading implements Comparable<Tem
 //		mBuilder.append("relative humidity: ");
 //		mBuilder.append(humidity + "%");
 		
-		mBuilder.append(this.getTimestamp() + "\t");
-		mBuilder.append(temp + "\t");
-		mBuilder.append(humidity + "\t");
+		mBuilder.append(this.getTimestamp()).append('\t');
+		mBuilder.append(temp).append('\t');
+		mBuilder.append(humidity).append('\t');
 		
 		return mBuilder.toString();
 	}
@@ -120,7 +120,7 @@ public class TempHumidityReading extends SensorReading implements Comparable<Tem
 		// compare the two objects
 		TempHumidityReading reading = (TempHumidityReading) o;
 		
-		if(this.getTimestamp() == reading.getTimestamp() && this.getTemp() == reading.getTemp() && this.getHumidity() == reading.getHumidity()) {
+		if(this.getTimestamp() == reading.getTimestamp() && this.getStationId() == reading.getStationId() && this.getTemp() == reading.getTemp() && this.getHumidity() == reading.getHumidity()) {
 			return true;
 		} else {
 			return false;
@@ -133,7 +133,8 @@ public class TempHumidityReading extends SensorReading implements Comparable<Tem
 	 */
 	@Override
 	public int hashCode() {
-		return Long.toString(this.getTimestamp()).hashCode();
+		long mKey = this.getTimestamp() ^ (this.getStationId() * 31);
+		return (int) (mKey ^ (mKey >>> 32));
 	}
 	
 	/*
@@ -142,11 +143,8 @@ public class TempHumidityReading extends SensorReading implements Comparable<Tem
 	 */
 	public int compareTo(TempHumidityReading another) {
 		
-		if(this.getTimestamp() == another.getTimestamp()) {
-			return 0;
-		} else {
-			return (int) (this.getTimestamp() - another.getTimestamp());
-		}
+		// compare the timestamps directly, subtracting them can overflow an int
+		return ReadingsSorter.compare(this.getTimestamp(), another.getTimestamp());
 	}
 
 }
@@ -227,18 +227,18 @@ public class WeatherReading extends SensorReading implements Comparable<WeatherR
 	@Override
 	public String toString() {
 		
-		StringBuilder mBuilder = new StringBuilder();
+		StringBuilder mBuilder = new StringBuilder(128);
 		
-		mBuilder.append(this.getTimestamp() + "\t");
-		mBuilder.append(barometricTrend + "\t");
-		mBuilder.append(barometer + "\t");
-		mBuilder.append(temperature + "\t");
-		mBuilder.append(humidity + "\t");
-		mBuilder.append(windSpeed + "\t");
-		mBuilder.append(averageWindSpeed + "\t");
-		mBuilder.append(windDirection + "\t");
-		mBuilder.append(rainRate + "\t");
-		mBuilder.append(rainToday + "\t");
+		mBuilder.append(this.getTimestamp()).append('\t');
+		mBuilder.append(barometricTrend).append('\t');
+		mBuilder.append(barometer).append('\t');
+		mBuilder.append(temperature).append('\t');
+		mBuilder.append(humidity).append('\t');
+		mBuilder.append(windSpeed).append('\t');
+		mBuilder.append(averageWindSpeed).append('\t');
+		mBuilder.append(windDirection).append('\t');
+		mBuilder.append(rainRate).append('\t');
+		mBuilder.append(rainToday).append('\t');
 		
 		return mBuilder.toString();
 	}
@@ -261,7 +261,7 @@ public class WeatherReading extends SensorReading implements Comparable<WeatherR
 		// compare the two objects
 		WeatherReading reading = (WeatherReading) o;
 		
-		if(reading.getTimestamp() == this.getTimestamp()) {
+		if(reading.getTimestamp() == this.getTimestamp() && reading.getStationId() == this.getStationId()) {
 			return true;
 		} else {
 			return false;
@@ -274,7 +274,8 @@ public class WeatherReading extends SensorReading implements Comparable<WeatherR
 	 */
 	@Override
 	public int hashCode() {
-		return Long.toString(this.getTimestamp()).hashCode();
+		long mKey = this.getTimestamp() ^ (this.getStationId() * 31);
+		return (int) (mKey ^ (mKey >>> 32));
 	}
 	
 	/*
@@ -283,11 +284,8 @@ public class WeatherReading extends SensorReading implements Comparable<WeatherR
 	 */
 	public int compareTo(WeatherReading another) {
 		
-		if(this.getTimestamp() == another.getTimestamp()) {
-			return 0;
-		} else {
-			return (int) (this.getTimestamp() - another.getTimestamp());
-		}
+		// compare the timestamps directly, subtracting them can overflow an int
+		return ReadingsSorter.compare(this.getTimestamp(), another.getTimestamp());
 	}
 
 }
@@ -0,0 +1,452 @@
+/*
+ * Copyright (C) 2013 The MaGDAA Project
+ *
+ * This file is part of the MaGDAA Library Software
+ *
+ * MaGDAA Library Software is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This source code is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this source code; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.magdaaproject.utils.readings;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * a time series of weather readings stored by column, with one primitive array for
+ * the timestamps and one for each of the fields defined by the ReadingFields class
+ *
+ * scanning or aggregating one field reads a single contiguous array instead of visiting
+ * every WeatherReading object. readings must be appended in timestamp order so that
+ * time ranges can be found with a binary search. a slice is a read only view of part of
+ * a series that shares its arrays, as the series only ever appends to its arrays or
+ * replaces them a slice continues to see the readings it was created with
+ */
+public class WeatherSeries implements Iterable<WeatherReading> {
+
+	/*
+	 * public class level constants
+	 */
+
+	/**
+	 * the default initial capacity of a series
+	 */
+	public static final int DEFAULT_CAPACITY = 256;
+
+	/*
+	 * private class level variables
+	 */
+	private long[] timestamps;
+	private float[][] columns;
+	private int start;
+	private int size;
+	private boolean slice;
+
+	/**
+	 * construct a new empty series with the default initial capacity
+	 */
+	public WeatherSeries() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * construct a new empty series
+	 *
+	 * @param capacity the initial number of readings the series can hold before it grows
+	 * @throws IllegalArgumentException if the capacity is less than one
+	 */
+	public WeatherSeries(int capacity) {
+
+		if(capacity < 1) {
+			throw new IllegalArgumentException("the capacity must be at least 1");
+		}
+
+		allocate(capacity);
+	}
+
+	/*
+	 * construct a slice of a series
+	 */
+	private WeatherSeries(long[] timestamps, float[][] columns, int start, int size) {
+		this.timestamps = timestamps;
+		this.columns = columns;
+		this.start = start;
+		this.size = size;
+		this.slice = true;
+	}
+
+	/**
+	 * append a reading to the end of the series
+	 *
+	 * @param reading the reading to append
+	 * @throws IllegalArgumentException if the reading is older than the last reading in the series
+	 * @throws UnsupportedOperationException if the series is a slice
+	 */
+	public void append(WeatherReading reading) {
+
+		checkAppend(reading.getTimestamp());
+
+		int mIndex = size;
+
+		timestamps[mIndex] = reading.getTimestamp();
+		columns[ReadingFields.TEMPERATURE][mIndex] = reading.getTemperature();
+		columns[ReadingFields.HUMIDITY][mIndex] = reading.getHumidity();
+		columns[ReadingFields.BAROMETER][mIndex] = reading.getBarometer();
+		columns[ReadingFields.BAROMETRIC_TREND][mIndex] = reading.getBarometricTrend();
+		columns[ReadingFields.WIND_SPEED][mIndex] = reading.getWindSpeed();
+		columns[ReadingFields.AVERAGE_WIND_SPEED][mIndex] = reading.getAverageWindSpeed();
+		columns[ReadingFields.WIND_DIRECTION][mIndex] = reading.getWindDirection();
+		columns[ReadingFields.RAIN_RATE][mIndex] = reading.getRainRate();
+		columns[ReadingFields.RAIN_TODAY][mIndex] = reading.getRainToday();
+
+		size++;
+	}
+
+	/**
+	 * append the weather readings from a collection of readings to the end of the series,
+	 * readings of other types are skipped
+	 *
+	 * @param readings the readings to append, in timestamp order
+	 * @return the number of readings appended
+	 * @throws IllegalArgumentException if a reading is older than the last reading in the series
+	 * @throws UnsupportedOperationException if the series is a slice
+	 */
+	public int appendAll(Iterable<? extends SensorReading> readings) {
+
+		int mCount = 0;
+
+		for(SensorReading mReading : readings) {
+			if(mReading instanceof WeatherReading) {
+				append((WeatherReading) mReading);
+				mCount++;
+			}
+		}
+
+		return mCount;
+	}
+
+	/**
+	 * @return the number of readings in the series
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return true if the series is a read only slice of another series
+	 */
+	public boolean isSlice() {
+		return slice;
+	}
+
+	/**
+	 * get the timestamp of a reading
+	 *
+	 * @param index the index of the reading
+	 * @return the timestamp of the reading
+	 */
+	public long getTimestamp(int index) {
+		checkIndex(index);
+		return timestamps[start + index];
+	}
+
+	/**
+	 * get the value of a field of a reading
+	 *
+	 * @param index the index of the reading
+	 * @param field the field, one of the field constants defined by the ReadingFields class
+	 * @return the value of the field
+	 * @throws IllegalArgumentException if the field is invalid
+	 */
+	public float getValue(int index, int field) {
+		checkIndex(index);
+		return getColumn(field)[start + index];
+	}
+
+	/**
+	 * build a new WeatherReading from a reading in the series
+	 *
+	 * @param index the index of the reading
+	 * @return the reading
+	 */
+	public WeatherReading getReading(int index) {
+		return getReading(index, new WeatherReading());
+	}
+
+	/**
+	 * populate an existing WeatherReading from a reading in the series
+	 *
+	 * @param index the index of the reading
+	 * @param reading the reading to populate
+	 * @return the populated reading
+	 */
+	public WeatherReading getReading(int index, WeatherReading reading) {
+
+		checkIndex(index);
+
+		int mIndex = start + index;
+
+		reading.setTimestamp(timestamps[mIndex]);
+		reading.setTemperature(columns[ReadingFields.TEMPERATURE][mIndex]);
+		reading.setHumidity((int) columns[ReadingFields.HUMIDITY][mIndex]);
+		reading.setBarometer(columns[ReadingFields.BAROMETER][mIndex]);
+		reading.setBarometricTrend((int) columns[ReadingFields.BAROMETRIC_TREND][mIndex]);
+		reading.setWindSpeed(columns[ReadingFields.WIND_SPEED][mIndex]);
+		reading.setAverageWindSpeed(columns[ReadingFields.AVERAGE_WIND_SPEED][mIndex]);
+		reading.setWindDirection((int) columns[ReadingFields.WIND_DIRECTION][mIndex]);
+		reading.setRainRate(columns[ReadingFields.RAIN_RATE][mIndex]);
+		reading.setRainToday(columns[ReadingFields.RAIN_TODAY][mIndex]);
+
+		return reading;
+	}
+
+	/**
+	 * add a new WeatherReading for each reading in the series to a list
+	 *
+	 * @param readings the list to add the readings to
+	 */
+	public void toReadingsList(ReadingsList readings) {
+		for(int i = 0; i < size; i++) {
+			readings.add(getReading(i));
+		}
+	}
+
+	/**
+	 * find the index of the first reading with a timestamp equal to or later than
+	 * the supplied timestamp, using a binary search
+	 *
+	 * @param timestamp the timestamp to search for
+	 * @return the index of the first matching reading, or the size of the series if all readings are earlier
+	 */
+	public int indexOfTimestamp(long timestamp) {
+
+		int mLow = start;
+		int mHigh = start + size;
+		int mMiddle;
+
+		while(mLow < mHigh) {
+			mMiddle = (mLow + mHigh) >>> 1;
+
+			if(timestamps[mMiddle] < timestamp) {
+				mLow = mMiddle + 1;
+			} else {
+				mHigh = mMiddle;
+			}
+		}
+
+		return mLow - start;
+	}
+
+	/**
+	 * get a read only view of the readings in a time range, without copying the readings
+	 *
+	 * @param from the earliest timestamp to include
+	 * @param to the timestamp to end the range at, readings at this time are not included
+	 * @return a slice of the series
+	 */
+	public WeatherSeries slice(long from, long to) {
+
+		int mFirst = indexOfTimestamp(from);
+		int mEnd = Math.max(mFirst, indexOfTimestamp(to));
+
+		return new WeatherSeries(timestamps, columns, start + mFirst, mEnd - mFirst);
+	}
+
+	/**
+	 * get the minimum value of a field
+	 *
+	 * @param field the field, one of the field constants defined by the ReadingFields class
+	 * @return the minimum value, or NaN if the series is empty
+	 * @throws IllegalArgumentException if the field is invalid
+	 */
+	public float getMinimum(int field) {
+
+		float[] mColumn = getColumn(field);
+
+		if(size == 0) {
+			return Float.NaN;
+		}
+
+		float mMinimum = mColumn[start];
+
+		for(int i = start + 1; i < start + size; i++) {
+			mMinimum = Math.min(mMinimum, mColumn[i]);
+		}
+
+		return mMinimum;
+	}
+
+	/**
+	 * get the maximum value of a field
+	 *
+	 * @param field the field, one of the field constants defined by the ReadingFields class
+	 * @return the maximum value, or NaN if the series is empty
+	 * @throws IllegalArgumentException if the field is invalid
+	 */
+	public float getMaximum(int field) {
+
+		float[] mColumn = getColumn(field);
+
+		if(size == 0) {
+			return Float.NaN;
+		}
+
+		float mMaximum = mColumn[start];
+
+		for(int i = start + 1; i < start + size; i++) {
+			mMaximum = Math.max(mMaximum, mColumn[i]);
+		}
+
+		return mMaximum;
+	}
+
+	/**
+	 * get the mean value of a field
+	 *
+	 * @param field the field, one of the field constants defined by the ReadingFields class
+	 * @return the mean value, or NaN if the series is empty
+	 * @throws IllegalArgumentException if the field is invalid
+	 */
+	public float getMean(int field) {
+
+		float[] mColumn = getColumn(field);
+
+		if(size == 0) {
+			return Float.NaN;
+		}
+
+		double mSum = 0;
+
+		for(int i = start; i < start + size; i++) {
+			mSum += mColumn[i];
+		}
+
+		return (float) (mSum / size);
+	}
+
+	/**
+	 * copy the values of a field into an array
+	 *
+	 * @param field the field, one of the field constants defined by the ReadingFields class
+	 * @param values the array to copy the values into
+	 * @param offset the index to store the first value at
+	 * @throws IllegalArgumentException if the field is invalid
+	 */
+	public void copyValues(int field, float[] values, int offset) {
+		System.arraycopy(getColumn(field), start, values, offset, size);
+	}
+
+	/**
+	 * copy the timestamps into an array
+	 *
+	 * @param values the array to copy the timestamps into
+	 * @param offset the index to store the first timestamp at
+	 */
+	public void copyTimestamps(long[] values, int offset) {
+		System.arraycopy(timestamps, start, values, offset, size);
+	}
+
+	/**
+	 * remove all of the readings from the series, slices that have already been taken are not affected
+	 *
+	 * @throws UnsupportedOperationException if the series is a slice
+	 */
+	public void clear() {
+
+		if(slice) {
+			throw new UnsupportedOperationException("a slice is read only");
+		}
+
+		// replace the arrays rather than reuse them, as they may be shared with slices
+		allocate(DEFAULT_CAPACITY);
+		size = 0;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Iterable#iterator()
+	 */
+	public Iterator<WeatherReading> iterator() {
+		return new Iterator<WeatherReading>() {
+
+			private int index = 0;
+			private int end = size;
+
+			public boolean hasNext() {
+				return index < end;
+			}
+
+			public WeatherReading next() {
+				if(hasNext() == false) {
+					throw new NoSuchElementException();
+				}
+
+				return getReading(index++);
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	/*
+	 * check that a reading can be appended, growing the arrays if necessary
+	 */
+	private void checkAppend(long timestamp) {
+
+		if(slice) {
+			throw new UnsupportedOperationException("a slice is read only");
+		}
+
+		if(size > 0 && timestamp < timestamps[size - 1]) {
+			throw new IllegalArgumentException("readings must be appended in timestamp order");
+		}
+
+		if(size == timestamps.length) {
+			// copy into new arrays, the old arrays may be shared with slices and are left unchanged
+			long[] mTimestamps = new long[timestamps.length * 2];
+			System.arraycopy(timestamps, 0, mTimestamps, 0, size);
+
+			float[][] mColumns = new float[ReadingFields.FIELD_COUNT][];
+
+			for(int i = 0; i < mColumns.length; i++) {
+				mColumns[i] = new float[mTimestamps.length];
+				System.arraycopy(columns[i], 0, mColumns[i], 0, size);
+			}
+
+			timestamps = mTimestamps;
+			columns = mColumns;
+		}
+	}
+
+	private void allocate(int capacity) {
+		timestamps = new long[capacity];
+		columns = new float[ReadingFields.FIELD_COUNT][capacity];
+	}
+
+	private float[] getColumn(int field) {
+
+		if(field < 0 || field >= ReadingFields.FIELD_COUNT) {
+			throw new IllegalArgumentException("the field is invalid");
+		}
+
+		return columns[field];
+	}
+
+	private void checkIndex(int index) {
+		if(index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("index: " + index + ", size: " + size);
+		}
+	}
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2013 The MaGDAA Project
+ *
+ * This file is part of the MaGDAA Library Software
+ *
+ * MaGDAA Library Software is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This source code is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this source code; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.magdaaproject.utils.sensors;
+
+/**
+ * the HIH-5031 analog humidity sensor, powered from a 3.3V supply
+ */
+public class Hih5031Sensor implements HumiditySensor {
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.magdaaproject.utils.sensors.HumiditySensor#convertVoltageToRelativeHumidity(float)
+	 */
+	public float convertVoltageToRelativeHumidity(float voltage) {
+		return (1.0f / 0.00636f) * ((voltage / 3.3f) - 0.1515f);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.magdaaproject.utils.sensors.HumiditySensor#adjustRelativeHumidity(float, float)
+	 */
+	public float adjustRelativeHumidity(float relativeHumidity, float temperature) {
+		return relativeHumidity / (1.0546f - (0.00216f * temperature));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.magdaaproject.utils.sensors.HumiditySensor#convertVoltagesToRelativeHumidity(float[], int, float[], int, float[], int, int)
+	 */
+	public void convertVoltagesToRelativeHumidity(float[] voltages, int voltageOffset, float[] temperatures, int temperatureOffset, float[] humidities, int humidityOffset, int length) {
+
+		// simple counted loops with no calls, so that they can be unrolled and vectorised
+		if(temperatures == null) {
+			for(int i = 0; i < length; i++) {
+				humidities[humidityOffset + i] = (1.0f / 0.00636f) * ((voltages[voltageOffset + i] / 3.3f) - 0.1515f);
+			}
+		} else {
+			for(int i = 0; i < length; i++) {
+				humidities[humidityOffset + i] = ((1.0f / 0.00636f) * ((voltages[voltageOffset + i] / 3.3f) - 0.1515f))
+						/ (1.0546f - (0.00216f * temperatures[temperatureOffset + i]));
+			}
+		}
+	}
+}
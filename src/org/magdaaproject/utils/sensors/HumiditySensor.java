@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2013 The MaGDAA Project
+ *
+ * This file is part of the MaGDAA Library Software
+ *
+ * MaGDAA Library Software is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This source code is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this source code; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.magdaaproject.utils.sensors;
+
+/**
+ * an interface implemented by classes that convert the voltage from an analog
+ * humidity sensor into a relative humidity
+ */
+public interface HumiditySensor {
+
+	/**
+	 * convert a voltage to a relative humidity
+	 *
+	 * @param voltage the voltage reading
+	 * @return the relative humidity derived from the voltage reading
+	 */
+	public float convertVoltageToRelativeHumidity(float voltage);
+
+	/**
+	 * adjust the relative humidity to take into account the current temperature
+	 *
+	 * @param relativeHumidity the relative humidity
+	 * @param temperature the current temperature in celsius
+	 * @return the adjusted relative humidity
+	 */
+	public float adjustRelativeHumidity(float relativeHumidity, float temperature);
+
+	/**
+	 * convert a block of voltages to relative humidities, adjusting each one for the
+	 * matching temperature in the same pass. gives the same results as converting and
+	 * adjusting each voltage in turn
+	 *
+	 * @param voltages an array of voltage readings
+	 * @param voltageOffset the index of the first voltage to convert
+	 * @param temperatures an array of temperatures in celsius, or null if the humidities should not be adjusted
+	 * @param temperatureOffset the index of the temperature matching the first voltage
+	 * @param humidities an array to hold the relative humidities, may be the same array as the voltages
+	 * @param humidityOffset the index to store the first relative humidity at
+	 * @param length the number of voltages to convert
+	 */
+	public void convertVoltagesToRelativeHumidity(float[] voltages, int voltageOffset, float[] temperatures, int temperatureOffset, float[] humidities, int humidityOffset, int length);
+}
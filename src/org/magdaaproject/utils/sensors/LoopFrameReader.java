@@ -0,0 +1,250 @@
+/*
+ * Copyright (C) 2013 The MaGDAA Project
+ *
+ * This file is part of the MaGDAA Library Software
+ *
+ * MaGDAA Library Software is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This source code is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this source code; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.magdaaproject.utils.sensors;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectableChannel;
+
+import org.magdaaproject.utils.SensorUtils;
+import org.magdaaproject.utils.readings.WeatherReading;
+
+/**
+ * a class which reads Vantage Vue LOOP and LOOP2 packets from a stream of bytes, such as
+ * the data received from the serial port of a weather station, without requiring the
+ * stream to be split into packets in advance
+ *
+ * the reader scans for the LOO header of each packet and only accepts a packet if it
+ * passes the CRC check. if bytes are lost or corrupted the reader moves forward one byte
+ * at a time until it finds the next valid packet, so at most the damaged packet is lost.
+ * packets are parsed in place in a reusable buffer
+ */
+public class LoopFrameReader {
+
+	/*
+	 * public class level constants
+	 */
+
+	/**
+	 * the default size of the buffer used to hold data read from the stream
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 4096;
+
+	/*
+	 * private class level variables
+	 */
+	private WeatherReadingListener listener;
+	private WeatherStation station;
+	private boolean reuseReading;
+	private WeatherReading reading;
+
+	// a reading that a rejected packet was parsed into, kept for the next packet
+	private WeatherReading spareReading;
+
+	private ByteBuffer buffer;
+
+	private long frameCount = 0;
+	private long skippedByteCount = 0;
+	private RejectedRecordCounter rejectedRecords = new RejectedRecordCounter();
+
+	/**
+	 * construct a new reader which passes a new reading to the listener for each packet
+	 *
+	 * @param listener the listener to notify of each reading
+	 */
+	public LoopFrameReader(WeatherReadingListener listener) {
+		this(listener, false, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * construct a new reader
+	 *
+	 * @param listener the listener to notify of each reading
+	 * @param reuseReading if true the same reading object is populated and passed to the listener for each packet
+	 * @param bufferSize the size of the buffer used to hold data read from the stream
+	 * @throws IllegalArgumentException if the listener is missing or the buffer is too small to hold a packet
+	 */
+	public LoopFrameReader(WeatherReadingListener listener, boolean reuseReading, int bufferSize) {
+
+		if(listener == null) {
+			throw new IllegalArgumentException("the listener parameter is required");
+		}
+
+		if(bufferSize < SensorUtils.VANTAGE_VUE_LOOP_PACKET_SIZE) {
+			throw new IllegalArgumentException("the buffer must be at least " + SensorUtils.VANTAGE_VUE_LOOP_PACKET_SIZE + " bytes");
+		}
+
+		this.listener = listener;
+		this.station = SensorRegistry.getWeatherStation(SensorUtils.VANTAGE_VUE);
+		this.reuseReading = reuseReading;
+		this.buffer = ByteBuffer.allocate(bufferSize);
+
+		if(reuseReading) {
+			reading = new WeatherReading();
+		}
+	}
+
+	/**
+	 * read packets from an input stream until the end of the stream is reached
+	 *
+	 * @param input the stream to read from
+	 * @throws IOException if something bad happens
+	 */
+	public void read(InputStream input) throws IOException {
+
+		int mCount;
+
+		while(true) {
+			mCount = input.read(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+
+			if(mCount == -1) {
+				break;
+			}
+
+			buffer.position(buffer.position() + mCount);
+			processBuffer();
+		}
+	}
+
+	/**
+	 * read packets from a channel until the end of the stream is reached
+	 *
+	 * @param channel the channel to read from, which must be in blocking mode
+	 * @throws IOException if something bad happens
+	 * @throws IllegalArgumentException if the channel is in non-blocking mode
+	 */
+	public void read(ReadableByteChannel channel) throws IOException {
+
+		// a non-blocking channel can return no data at all, which would spin this loop
+		if(channel instanceof SelectableChannel && ((SelectableChannel) channel).isBlocking() == false) {
+			throw new IllegalArgumentException("the channel must be in blocking mode, use the process method for non-blocking channels");
+		}
+
+		while(channel.read(buffer) != -1) {
+			processBuffer();
+		}
+	}
+
+	/**
+	 * process data that has already been read from the stream, for example by a serial
+	 * port callback. any incomplete packet at the end of the data is kept until more
+	 * data is supplied
+	 *
+	 * @param bytes an array of bytes
+	 * @param offset the offset of the first byte to process
+	 * @param length the number of bytes to process
+	 */
+	public void process(byte[] bytes, int offset, int length) {
+
+		int mCount;
+
+		while(length > 0) {
+			mCount = Math.min(length, buffer.remaining());
+
+			buffer.put(bytes, offset, mCount);
+			processBuffer();
+
+			offset += mCount;
+			length -= mCount;
+		}
+	}
+
+	/**
+	 * @return the number of valid packets that have been read
+	 */
+	public long getFrameCount() {
+		return frameCount;
+	}
+
+	/**
+	 * @return the number of bytes that have been skipped while looking for valid packets
+	 */
+	public long getSkippedByteCount() {
+		return skippedByteCount;
+	}
+
+	/**
+	 * @return the counts of the packets read by this reader that started with a header but were rejected
+	 */
+	public RejectedRecordCounter getRejectedRecordCounter() {
+		return rejectedRecords;
+	}
+
+	/*
+	 * parse all of the complete packets in the buffer, leaving the buffer ready to receive more data
+	 */
+	private void processBuffer() {
+
+		byte[] mBytes = buffer.array();
+		int mStart = buffer.arrayOffset();
+		int mEnd = mStart + buffer.position();
+		int mIndex = mStart;
+
+		WeatherReading mReading;
+
+		while(mEnd - mIndex >= SensorUtils.VANTAGE_VUE_LOOP_PACKET_SIZE) {
+
+			if(mBytes[mIndex] != 'L' || mBytes[mIndex + 1] != 'O' || mBytes[mIndex + 2] != 'O') {
+				mIndex++;
+				skippedByteCount++;
+				continue;
+			}
+
+			// only allocate a new reading once the previous one has been passed to the listener
+			if(reuseReading) {
+				mReading = reading;
+			} else {
+				if(spareReading == null) {
+					spareReading = new WeatherReading();
+				}
+
+				mReading = spareReading;
+			}
+
+			if(SensorUtils.parseWeatherRecord(mBytes, mIndex, station, mReading, rejectedRecords)) {
+				mIndex += SensorUtils.VANTAGE_VUE_LOOP_PACKET_SIZE;
+				frameCount++;
+
+				if(reuseReading == false) {
+					spareReading = null;
+				}
+
+				listener.onWeatherReading(mReading);
+			} else {
+				// not a valid packet, look for the next header
+				mIndex++;
+				skippedByteCount++;
+			}
+		}
+
+		// skip any bytes that cannot be the start of a packet
+		while(mIndex < mEnd && mBytes[mIndex] != 'L') {
+			mIndex++;
+			skippedByteCount++;
+		}
+
+		// move any incomplete packet to the start of the buffer
+		buffer.flip();
+		buffer.position(mIndex - mStart);
+		buffer.compact();
+	}
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2013 The MaGDAA Project
+ *
+ * This file is part of the MaGDAA Library Software
+ *
+ * MaGDAA Library Software is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This source code is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this source code; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.magdaaproject.utils.sensors;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.magdaaproject.utils.SensorUtils;
+
+/**
+ * a class which counts the weather records rejected while parsing a stream of records,
+ * by the reason they were rejected. each reader or stream has its own counter so that
+ * the counts of different weather stations can be told apart. the counts can be updated
+ * by more than one thread, such as the threads parsing a large batch of records
+ */
+public class RejectedRecordCounter {
+
+	/*
+	 * private class level variables
+	 */
+	private AtomicLongArray counts = new AtomicLongArray(SensorUtils.REJECTED_VALUE + 1);
+
+	/**
+	 * count a rejected record
+	 *
+	 * @param reason the reason the record was rejected, one of the rejected constants defined in the SensorUtils class
+	 * @throws IllegalArgumentException if the reason is invalid
+	 */
+	public void increment(int reason) {
+		checkReason(reason);
+		counts.incrementAndGet(reason);
+	}
+
+	/**
+	 * get the number of records that have been rejected for a reason
+	 *
+	 * @param reason the reason the records were rejected, one of the rejected constants defined in the SensorUtils class
+	 * @return the number of records rejected for the reason
+	 * @throws IllegalArgumentException if the reason is invalid
+	 */
+	public long getCount(int reason) {
+		checkReason(reason);
+		return counts.get(reason);
+	}
+
+	/**
+	 * @return the total number of records that have been rejected
+	 */
+	public long getCount() {
+
+		long mCount = 0;
+
+		for(int i = 0; i < counts.length(); i++) {
+			mCount += counts.get(i);
+		}
+
+		return mCount;
+	}
+
+	/**
+	 * reset all of the counts to zero
+	 */
+	public void reset() {
+		for(int i = 0; i < counts.length(); i++) {
+			counts.set(i, 0);
+		}
+	}
+
+	private void checkReason(int reason) {
+		if(reason < SensorUtils.REJECTED_LENGTH || reason > SensorUtils.REJECTED_VALUE) {
+			throw new IllegalArgumentException("the reason is invalid");
+		}
+	}
+}
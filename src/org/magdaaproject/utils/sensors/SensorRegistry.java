@@ -0,0 +1,219 @@
+/*
+ * Copyright (C) 2013 The MaGDAA Project
+ *
+ * This file is part of the MaGDAA Library Software
+ *
+ * MaGDAA Library Software is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This source code is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this source code; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.magdaaproject.utils.sensors;
+
+import java.util.Arrays;
+
+import org.magdaaproject.utils.SensorUtils;
+
+/**
+ * a registry of the supported sensors and weather stations, keyed by the type
+ * constants defined in the SensorUtils class
+ *
+ * the sensor for a type should be looked up once, for example when a station is
+ * configured, and then used directly for each sample. new sensors can be registered
+ * under a new type constant without changing the SensorUtils class
+ */
+public class SensorRegistry {
+
+	/*
+	 * private class level variables
+	 */
+	private static final SensorTable<TemperatureSensor> temperatureSensors = new SensorTable<TemperatureSensor>();
+	private static final SensorTable<HumiditySensor> humiditySensors = new SensorTable<HumiditySensor>();
+	private static final SensorTable<WeatherStation> weatherStations = new SensorTable<WeatherStation>();
+
+	static {
+		temperatureSensors.put(SensorUtils.TMP36, new Tmp36Sensor());
+		humiditySensors.put(SensorUtils.HIH5031, new Hih5031Sensor());
+		weatherStations.put(SensorUtils.VANTAGE_VUE, new VantageVueStation());
+	}
+
+	/**
+	 * register a temperature sensor, replacing any sensor already registered for the type
+	 *
+	 * @param sensorType the type of the sensor
+	 * @param sensor the sensor
+	 * @throws IllegalArgumentException if the sensor is missing
+	 */
+	public static void registerTemperatureSensor(int sensorType, TemperatureSensor sensor) {
+
+		if(sensor == null) {
+			throw new IllegalArgumentException("the sensor parameter is required");
+		}
+
+		temperatureSensors.put(sensorType, sensor);
+	}
+
+	/**
+	 * register a humidity sensor, replacing any sensor already registered for the type
+	 *
+	 * @param sensorType the type of the sensor
+	 * @param sensor the sensor
+	 * @throws IllegalArgumentException if the sensor is missing
+	 */
+	public static void registerHumiditySensor(int sensorType, HumiditySensor sensor) {
+
+		if(sensor == null) {
+			throw new IllegalArgumentException("the sensor parameter is required");
+		}
+
+		humiditySensors.put(sensorType, sensor);
+	}
+
+	/**
+	 * register a weather station, replacing any weather station already registered for the type
+	 *
+	 * @param weatherStationType the type of the weather station
+	 * @param station the weather station
+	 * @throws IllegalArgumentException if the weather station is missing
+	 */
+	public static void registerWeatherStation(int weatherStationType, WeatherStation station) {
+
+		if(station == null) {
+			throw new IllegalArgumentException("the station parameter is required");
+		}
+
+		weatherStations.put(weatherStationType, station);
+	}
+
+	/**
+	 * get the temperature sensor for a type
+	 *
+	 * @param sensorType the type of the sensor
+	 * @return the temperature sensor
+	 * @throws IllegalArgumentException if the sensorType is invalid
+	 */
+	public static TemperatureSensor getTemperatureSensor(int sensorType) {
+
+		TemperatureSensor mSensor = temperatureSensors.get(sensorType);
+
+		if(mSensor == null) {
+			throw new IllegalArgumentException("the sensorType is invalid");
+		}
+
+		return mSensor;
+	}
+
+	/**
+	 * get the humidity sensor for a type
+	 *
+	 * @param sensorType the type of the sensor
+	 * @return the humidity sensor
+	 * @throws IllegalArgumentException if the sensorType is invalid
+	 */
+	public static HumiditySensor getHumiditySensor(int sensorType) {
+
+		HumiditySensor mSensor = humiditySensors.get(sensorType);
+
+		if(mSensor == null) {
+			throw new IllegalArgumentException("the sensorType is invalid");
+		}
+
+		return mSensor;
+	}
+
+	/**
+	 * get the weather station for a type
+	 *
+	 * @param weatherStationType the type of the weather station
+	 * @return the weather station
+	 * @throws IllegalArgumentException if the weatherStationType is invalid
+	 */
+	public static WeatherStation getWeatherStation(int weatherStationType) {
+
+		WeatherStation mStation = weatherStations.get(weatherStationType);
+
+		if(mStation == null) {
+			throw new IllegalArgumentException("the weather station type is invalid");
+		}
+
+		return mStation;
+	}
+
+	/*
+	 * a table of sensors keyed by their primitive type constant, so that a lookup does not
+	 * box the type. registrations are rare and replace the whole snapshot of sorted types
+	 * and sensors, lookups search the current snapshot without locking
+	 */
+	private static class SensorTable<T> {
+
+		private volatile Snapshot snapshot = new Snapshot(new int[0], new Object[0]);
+
+		public synchronized void put(int type, T sensor) {
+
+			int[] mTypes = snapshot.types;
+			Object[] mSensors = snapshot.sensors;
+
+			int mIndex = Arrays.binarySearch(mTypes, type);
+
+			if(mIndex >= 0) {
+				// replace the sensor already registered for the type
+				mSensors = mSensors.clone();
+				mSensors[mIndex] = sensor;
+				snapshot = new Snapshot(mTypes, mSensors);
+				return;
+			}
+
+			// insert the new type keeping the types sorted
+			mIndex = -(mIndex + 1);
+
+			int[] mNewTypes = new int[mTypes.length + 1];
+			Object[] mNewSensors = new Object[mTypes.length + 1];
+
+			System.arraycopy(mTypes, 0, mNewTypes, 0, mIndex);
+			System.arraycopy(mSensors, 0, mNewSensors, 0, mIndex);
+			mNewTypes[mIndex] = type;
+			mNewSensors[mIndex] = sensor;
+			System.arraycopy(mTypes, mIndex, mNewTypes, mIndex + 1, mTypes.length - mIndex);
+			System.arraycopy(mSensors, mIndex, mNewSensors, mIndex + 1, mTypes.length - mIndex);
+
+			snapshot = new Snapshot(mNewTypes, mNewSensors);
+		}
+
+		@SuppressWarnings("unchecked")
+		public T get(int type) {
+
+			Snapshot mSnapshot = snapshot;
+
+			int mIndex = Arrays.binarySearch(mSnapshot.types, type);
+
+			if(mIndex < 0) {
+				return null;
+			}
+
+			return (T) mSnapshot.sensors[mIndex];
+		}
+	}
+
+	/*
+	 * the sorted types and matching sensors of a table, never modified once published
+	 */
+	private static class Snapshot {
+
+		private final int[] types;
+		private final Object[] sensors;
+
+		public Snapshot(int[] types, Object[] sensors) {
+			this.types = types;
+			this.sensors = sensors;
+		}
+	}
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2013 The MaGDAA Project
+ *
+ * This file is part of the MaGDAA Library Software
+ *
+ * MaGDAA Library Software is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This source code is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this source code; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.magdaaproject.utils.sensors;
+
+/**
+ * an interface implemented by classes that convert the voltage from an analog
+ * temperature sensor into a temperature
+ */
+public interface TemperatureSensor {
+
+	/**
+	 * convert a voltage to a temperature
+	 *
+	 * @param voltage the voltage reading
+	 * @return the temperature in celsius
+	 */
+	public float convertVoltageToTemp(float voltage);
+
+	/**
+	 * convert a block of voltages to temperatures, giving the same results as converting
+	 * each voltage in turn
+	 *
+	 * @param voltages an array of voltage readings
+	 * @param voltageOffset the index of the first voltage to convert
+	 * @param temperatures an array to hold the temperatures in celsius, may be the same array as the voltages
+	 * @param temperatureOffset the index to store the first temperature at
+	 * @param length the number of voltages to convert
+	 */
+	public void convertVoltagesToTemp(float[] voltages, int voltageOffset, float[] temperatures, int temperatureOffset, int length);
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2013 The MaGDAA Project
+ *
+ * This file is part of the MaGDAA Library Software
+ *
+ * MaGDAA Library Software is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This source code is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this source code; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.magdaaproject.utils.sensors;
+
+/**
+ * the TMP36 analog temperature sensor
+ */
+public class Tmp36Sensor implements TemperatureSensor {
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.magdaaproject.utils.sensors.TemperatureSensor#convertVoltageToTemp(float)
+	 */
+	public float convertVoltageToTemp(float voltage) {
+		// 10mV per degree with an offset of 500mV
+		return (voltage - 0.5f) * 100.0f;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.magdaaproject.utils.sensors.TemperatureSensor#convertVoltagesToTemp(float[], int, float[], int, int)
+	 */
+	public void convertVoltagesToTemp(float[] voltages, int voltageOffset, float[] temperatures, int temperatureOffset, int length) {
+
+		// a simple counted loop with no calls, so that it can be unrolled and vectorised
+		for(int i = 0; i < length; i++) {
+			temperatures[temperatureOffset + i] = (voltages[voltageOffset + i] - 0.5f) * 100.0f;
+		}
+	}
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright (C) 2013 The MaGDAA Project
+ *
+ * This file is part of the MaGDAA Library Software
+ *
+ * MaGDAA Library Software is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This source code is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this source code; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.magdaaproject.utils.sensors;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import org.magdaaproject.utils.SensorUtils;
+import org.magdaaproject.utils.UnitConversionUtils;
+import org.magdaaproject.utils.readings.WeatherReading;
+
+/**
+ * a class which decodes the archive records downloaded from a Vantage Vue weather station
+ * using the DMP and DMPAFT commands
+ *
+ * the archive is downloaded one 267 byte page at a time, each page holds five 52 byte
+ * archive records. each page is decoded as soon as it is received and the readings are
+ * passed to a listener, so a full download never needs to be held in memory. the
+ * archive records do not include a barometric trend or a daily rain total, the trend
+ * is left as steady and the daily rain total is accumulated from the rain that fell in
+ * each archive interval, starting from the first record downloaded for each day
+ */
+public class VantageVueArchiveDecoder {
+
+	/*
+	 * public class level constants
+	 */
+
+	/**
+	 * the size of an archive page in bytes
+	 */
+	public static final int PAGE_SIZE = 267;
+
+	/**
+	 * the size of an archive record in bytes
+	 */
+	public static final int RECORD_SIZE = 52;
+
+	/**
+	 * the number of archive records in a page
+	 */
+	public static final int RECORDS_PER_PAGE = 5;
+
+	/*
+	 * private class level constants
+	 */
+	private static final int NO_TEMPERATURE = 32767;
+	private static final int NO_HUMIDITY = 255;
+	private static final int NO_WIND_DIRECTION = 255;
+
+	/*
+	 * private class level variables
+	 */
+	private WeatherReadingListener listener;
+	private Calendar calendar;
+
+	private long minimumTimestamp = Long.MIN_VALUE;
+
+	private int rainDay = -1;
+	private float rainToday = 0;
+
+	private long pageCount = 0;
+	private long rejectedPageCount = 0;
+
+	/**
+	 * construct a new decoder which interprets the archive timestamps using the default time zone
+	 *
+	 * @param listener the listener to notify of each reading
+	 */
+	public VantageVueArchiveDecoder(WeatherReadingListener listener) {
+		this(listener, TimeZone.getDefault());
+	}
+
+	/**
+	 * construct a new decoder
+	 *
+	 * @param listener the listener to notify of each reading
+	 * @param timeZone the time zone of the clock of the weather station
+	 * @throws IllegalArgumentException if the listener or time zone is missing
+	 */
+	public VantageVueArchiveDecoder(WeatherReadingListener listener, TimeZone timeZone) {
+
+		if(listener == null) {
+			throw new IllegalArgumentException("the listener parameter is required");
+		}
+
+		if(timeZone == null) {
+			throw new IllegalArgumentException("the timeZone parameter is required");
+		}
+
+		this.listener = listener;
+		this.calendar = Calendar.getInstance(timeZone);
+	}
+
+	/**
+	 * set the timestamp of the newest record already stored, records at or before this
+	 * time are ignored. this matches the time sent with the DMPAFT command, as the first
+	 * page of a DMPAFT download can contain older records
+	 *
+	 * @param timestamp the timestamp of the newest record already stored
+	 */
+	public void setMinimumTimestamp(long timestamp) {
+		this.minimumTimestamp = timestamp;
+	}
+
+	/**
+	 * decode a page of archive records, notifying the listener of each valid record in the page
+	 *
+	 * @param bytes an array of bytes containing the page
+	 * @param offset the offset of the start of the page in the array
+	 * @return true if the page was decoded, false if it failed the CRC check and should be requested again
+	 * @throws IllegalArgumentException if the array does not contain a full page
+	 */
+	public boolean decodePage(byte[] bytes, int offset) {
+
+		if(offset < 0 || bytes.length - offset < PAGE_SIZE) {
+			throw new IllegalArgumentException("the array does not contain a full page");
+		}
+
+		if(SensorUtils.calculateCrc(bytes, offset, PAGE_SIZE) != 0) {
+			rejectedPageCount++;
+			return false;
+		}
+
+		WeatherReading mReading;
+
+		// the first byte of the page is the sequence number
+		for(int i = 0; i < RECORDS_PER_PAGE; i++) {
+			mReading = new WeatherReading(0);
+
+			if(decodeRecord(bytes, offset + 1 + (i * RECORD_SIZE), mReading) && mReading.getTimestamp() > minimumTimestamp) {
+				listener.onWeatherReading(mReading);
+			}
+		}
+
+		pageCount++;
+
+		return true;
+	}
+
+	/**
+	 * decode a single archive record into a reading
+	 *
+	 * @param bytes an array of bytes containing the record
+	 * @param offset the offset of the start of the record in the array
+	 * @param reading the reading to populate
+	 * @return true if the record was decoded, false if the record is empty
+	 */
+	public boolean decodeRecord(byte[] bytes, int offset, WeatherReading reading) {
+
+		int mDate = getUnsignedShort(bytes, offset);
+		int mTime = getUnsignedShort(bytes, offset + 2);
+
+		// unused records are filled with 0xff
+		if(mDate == 0xffff || mDate == 0 || mTime == 0xffff) {
+			return false;
+		}
+
+		// the date is packed as day + month * 32 + (year - 2000) * 512 and the time as hour * 100 + minute
+		int mDay = mDate & 0x1f;
+		int mMonth = (mDate >> 5) & 0x0f;
+		int mYear = (mDate >> 9) + 2000;
+
+		calendar.clear();
+		calendar.set(mYear, mMonth - 1, mDay, mTime / 100, mTime % 100, 0);
+		reading.setTimestamp(calendar.getTimeInMillis());
+
+		// outside temperature, in tenths of a degree fahrenheit
+		int mTemperature = getShort(bytes, offset + 4);
+		if(mTemperature != NO_TEMPERATURE) {
+			reading.setTemperature((mTemperature / 10f - 32f) * 5 / 9);
+		}
+
+		// rain clicks during the archive interval, accumulated into a daily total
+		if(mDate != rainDay) {
+			rainDay = mDate;
+			rainToday = 0;
+		}
+		rainToday += getUnsignedShort(bytes, offset + 10) * VantageVueStation.RAIN_CLICK_IN_MM;
+		reading.setRainToday(rainToday);
+
+		// highest rain rate during the archive interval, in clicks per hour
+		reading.setRainRate(getUnsignedShort(bytes, offset + 12) * VantageVueStation.RAIN_CLICK_IN_MM);
+
+		// barometer, in thousandths of an inch of mercury
+		reading.setBarometer(getUnsignedShort(bytes, offset + 14) / 1000f * UnitConversionUtils.HG_INCH_TO_HPA);
+
+		// outside humidity
+		int mHumidity = bytes[offset + 23] & 0xff;
+		if(mHumidity != NO_HUMIDITY) {
+			reading.setHumidity(mHumidity);
+		}
+
+		// average wind speed during the archive interval, in miles per hour
+		float mWindSpeed = (bytes[offset + 24] & 0xff) * UnitConversionUtils.MPH_TO_KPH;
+		reading.setWindSpeed(mWindSpeed);
+		reading.setAverageWindSpeed(mWindSpeed);
+
+		// prevailing wind direction, as one of sixteen compass points with zero as north
+		int mDirection = bytes[offset + 27] & 0xff;
+		if(mDirection < 16) {
+			reading.setWindDirection(mDirection == 0 ? 360 : Math.round(mDirection * 22.5f));
+		} else if(mDirection == NO_WIND_DIRECTION) {
+			reading.setWindDirection(0);
+		}
+
+		return true;
+	}
+
+	/**
+	 * @return the number of pages that have been decoded
+	 */
+	public long getPageCount() {
+		return pageCount;
+	}
+
+	/**
+	 * @return the number of pages that failed the CRC check
+	 */
+	public long getRejectedPageCount() {
+		return rejectedPageCount;
+	}
+
+	/*
+	 * read a little endian signed short
+	 */
+	private static int getShort(byte[] bytes, int offset) {
+		return (short) ((bytes[offset] & 0xff) | (bytes[offset + 1] << 8));
+	}
+
+	/*
+	 * read a little endian unsigned short
+	 */
+	private static int getUnsignedShort(byte[] bytes, int offset) {
+		return (bytes[offset] & 0xff) | ((bytes[offset + 1] & 0xff) << 8);
+	}
+}
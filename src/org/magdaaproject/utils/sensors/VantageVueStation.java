@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2013 The MaGDAA Project
+ *
+ * This file is part of the MaGDAA Library Software
+ *
+ * MaGDAA Library Software is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This source code is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this source code; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.magdaaproject.utils.sensors;
+
+import org.magdaaproject.utils.SensorUtils;
+import org.magdaaproject.utils.UnitConversionUtils;
+import org.magdaaproject.utils.readings.WeatherReading;
+
+/**
+ * the Vantage Vue weather station, decoding both LOOP and LOOP2 packets
+ */
+public class VantageVueStation implements WeatherStation {
+
+	/*
+	 * package level constants
+	 */
+	static final float RAIN_CLICK_IN_MM = 0.2f;
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.magdaaproject.utils.sensors.WeatherStation#getRecordSize()
+	 */
+	public int getRecordSize() {
+		return SensorUtils.VANTAGE_VUE_LOOP_PACKET_SIZE;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.magdaaproject.utils.sensors.WeatherStation#getRainClickInMillimeters()
+	 */
+	public float getRainClickInMillimeters() {
+		return RAIN_CLICK_IN_MM;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.magdaaproject.utils.sensors.WeatherStation#parseRecord(byte[], int, int, org.magdaaproject.utils.readings.WeatherReading)
+	 */
+	public int parseRecord(byte[] bytes, int offset, int length, WeatherReading reading) {
+
+		if(offset < 0 || length < SensorUtils.VANTAGE_VUE_LOOP_PACKET_SIZE) {
+			return SensorUtils.REJECTED_LENGTH;
+		}
+
+		// check for the LOO header shared by LOOP and LOOP2 packets
+		if(bytes[offset] != 'L' || bytes[offset + 1] != 'O' || bytes[offset + 2] != 'O') {
+			return SensorUtils.REJECTED_HEADER;
+		}
+
+		if(SensorUtils.calculateCrc(bytes, offset, SensorUtils.VANTAGE_VUE_LOOP_PACKET_SIZE) != 0) {
+			return SensorUtils.REJECTED_CRC;
+		}
+
+		// wind direction, validated first so that the reading is left untouched if it is invalid
+		short mWindDirection = getShort(bytes, offset + 16);
+
+		if(mWindDirection < 0 || mWindDirection > 360) {
+			return SensorUtils.REJECTED_VALUE;
+		}
+
+		// the two packet types share the same layout for all of the fields except the average wind speed
+		reading.setTimestamp(System.currentTimeMillis());
+
+		// barometric trend
+		reading.setBarometricTrend(bytes[offset + 3]);
+
+		// barometer, in thousandths of an inch of mercury
+		reading.setBarometer(getShort(bytes, offset + 7) / 1000f * UnitConversionUtils.HG_INCH_TO_HPA);
+
+		// temperature, in tenths of a degree fahrenheit
+		reading.setTemperature((getShort(bytes, offset + 12) / 10f - 32f) * 5 / 9);
+
+		// wind speed, in miles per hour
+		reading.setWindSpeed((bytes[offset + 14] & 0xff) * UnitConversionUtils.MPH_TO_KPH);
+
+		if(bytes[offset + 4] == SensorUtils.VANTAGE_VUE_LOOP2_PACKET_TYPE) {
+			// ten minute average wind speed, in tenths of a mile per hour
+			reading.setAverageWindSpeed(getShort(bytes, offset + 18) / 10f * UnitConversionUtils.MPH_TO_KPH);
+		} else {
+			// ten minute average wind speed, in miles per hour
+			reading.setAverageWindSpeed((bytes[offset + 15] & 0xff) * UnitConversionUtils.MPH_TO_KPH);
+		}
+
+		reading.setWindDirection(mWindDirection);
+
+		// humidity
+		reading.setHumidity(bytes[offset + 33] & 0xff);
+
+		// rain rate, in rain clicks
+		reading.setRainRate(getShort(bytes, offset + 41) * RAIN_CLICK_IN_MM);
+
+		// rain today, in rain clicks
+		reading.setRainToday(getShort(bytes, offset + 50) * RAIN_CLICK_IN_MM);
+
+		return RECORD_VALID;
+	}
+
+	/*
+	 * read a little endian signed short
+	 */
+	private static short getShort(byte[] bytes, int offset) {
+		return (short) ((bytes[offset] & 0xff) | (bytes[offset + 1] << 8));
+	}
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2013 The MaGDAA Project
+ *
+ * This file is part of the MaGDAA Library Software
+ *
+ * MaGDAA Library Software is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This source code is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this source code; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.magdaaproject.utils.sensors;
+
+import org.magdaaproject.utils.readings.WeatherReading;
+
+/**
+ * an interface implemented by classes that decode the binary records sent by a
+ * weather station
+ */
+public interface WeatherStation {
+
+	/**
+	 * the value returned by parseRecord when the record is valid
+	 */
+	public static final int RECORD_VALID = -1;
+
+	/**
+	 * @return the size of a record in bytes
+	 */
+	public int getRecordSize();
+
+	/**
+	 * @return the amount of rain represented by one click of the rain gauge in millimeters
+	 */
+	public float getRainClickInMillimeters();
+
+	/**
+	 * parse a binary record into an existing reading without allocating any memory, the
+	 * timestamp of the reading is set to the current time
+	 *
+	 * @param bytes an array of bytes containing the record
+	 * @param offset the offset of the start of the record in the array
+	 * @param length the number of bytes available from the offset
+	 * @param reading the reading to populate
+	 * @return RECORD_VALID if the reading was populated, otherwise one of the rejected constants defined in the SensorUtils class
+	 */
+	public int parseRecord(byte[] bytes, int offset, int length, WeatherReading reading);
+}